@@ -0,0 +1,488 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+
+
+package org.openx.data.jsonserde;
+
+import io.starburst.openjson.JSONArray;
+import io.starburst.openjson.JSONByteTokener;
+import io.starburst.openjson.JSONException;
+import io.starburst.openjson.JSONFieldSelector;
+import io.starburst.openjson.JSONKeyIndex;
+import io.starburst.openjson.JSONObject;
+import org.apache.hadoop.hive.common.type.HiveDecimal;
+import org.apache.hadoop.hive.common.type.Timestamp;
+import org.apache.hadoop.hive.serde2.io.ByteWritable;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.io.HiveDecimalWritable;
+import org.apache.hadoop.hive.serde2.io.ShortWritable;
+import org.apache.hadoop.hive.serde2.io.TimestampWritableV2;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector.Category;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.HiveDecimalObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.TimestampObjectInspector;
+import org.apache.hadoop.hive.serde2.typeinfo.DecimalTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.PrimitiveTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.StructTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.io.BooleanWritable;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.openx.data.jsonserde.objectinspector.JsonObjectInspectorFactory;
+import org.openx.data.jsonserde.objectinspector.JsonStructOIOptions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses JSON rows of a fixed table schema straight into a Hive row, without
+ * building a JSONObject for them. The row is a list of Hadoop writables for
+ * the boolean, numeric, string, timestamp and decimal columns, which are
+ * converted as their keys are read. Decimals are read from the text of their
+ * numbers, so that they are exact however many digits they have. Values of
+ * other types are kept as parsed and read through the usual JSON object
+ * inspectors.
+ *
+ * The row and its writables are reused: a row is only valid until the next
+ * one is parsed. Rows read the same as the ones parsed into JSONObjects,
+ * except that values are converted upfront, so a value that can't be
+ * converted fails the row even if its column isn't read.
+ *
+ * Keys with dots are not replaced with underscores, so this parser must not
+ * be used when dots.in.keys is set.
+ */
+class JsonRowParser {
+
+    private final JSONKeyIndex keys;
+    // the columns read from each key of the index
+    private final int[][] keyColumns;
+    // the columns of the row, null for the ones that aren't read
+    private final Column[] columns;
+    private final Object[] row;
+    private final List<Object> rowList;
+    private final StructObjectInspector rowObjectInspector;
+
+    /**
+     * Compiles the parser for a table.
+     *
+     * @param rowTypeInfo the columns of the table
+     * @param options the mappings and other options of the table
+     * @param readColumns the columns to read mapped to the nested fields to
+     *                    read from them, null to read whole columns. Null to
+     *                    read all columns
+     */
+    JsonRowParser(StructTypeInfo rowTypeInfo, JsonStructOIOptions options,
+            Map<String, JSONFieldSelector> readColumns) {
+        List<String> names = rowTypeInfo.getAllStructFieldNames();
+        List<TypeInfo> types = rowTypeInfo.getAllStructFieldTypeInfos();
+
+        columns = new Column[names.size()];
+        row = new Object[names.size()];
+        rowList = Arrays.asList(row);
+        keys = new JSONKeyIndex(options.isCaseInsensitive());
+
+        List<ObjectInspector> inspectors = new ArrayList<ObjectInspector>(names.size());
+        List<int[]> columnsByKey = new ArrayList<int[]>();
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            Column column = compile(i, types.get(i), options);
+            inspectors.add(column.getObjectInspector());
+            if (readColumns != null && !readColumns.containsKey(name)) {
+                continue;
+            }
+            columns[i] = column;
+            if (readColumns != null) {
+                column.selector = readColumns.get(name);
+            }
+
+            // several columns may be mapped to the same key
+            String jsonKey = options.getMappings().containsKey(name) ? options.getMappings().get(name) : name;
+            int id = keys.get(jsonKey);
+            if (id == JSONKeyIndex.NOT_FOUND) {
+                keys.put(jsonKey, columnsByKey.size());
+                columnsByKey.add(new int[]{i});
+            } else {
+                int[] previous = columnsByKey.get(id);
+                int[] current = Arrays.copyOf(previous, previous.length + 1);
+                current[previous.length] = i;
+                columnsByKey.set(id, current);
+            }
+        }
+        keyColumns = columnsByKey.toArray(new int[columnsByKey.size()][]);
+
+        rowObjectInspector = ObjectInspectorFactory.getStandardStructObjectInspector(names, inspectors);
+    }
+
+    private Column compile(int index, TypeInfo type, JsonStructOIOptions options) {
+        ObjectInspector jsonInspector = JsonObjectInspectorFactory.getJsonObjectInspectorFromTypeInfo(type, options);
+        if (type.getCategory() != Category.PRIMITIVE) {
+            return new ObjectColumn(index, jsonInspector);
+        }
+        PrimitiveObjectInspector primitiveInspector = (PrimitiveObjectInspector) jsonInspector;
+        switch (((PrimitiveTypeInfo) type).getPrimitiveCategory()) {
+            case BOOLEAN:
+                return new BooleanColumn(index, primitiveInspector);
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+                return new IntegerColumn(index, primitiveInspector);
+            case FLOAT:
+                return new FloatColumn(index, primitiveInspector);
+            case DOUBLE:
+                return new DoubleColumn(index, primitiveInspector);
+            case STRING:
+                return new StringColumn(index);
+            case TIMESTAMP:
+                return new TimestampColumn(index, (TimestampObjectInspector) primitiveInspector);
+            case DECIMAL:
+                return new DecimalColumn(index, (DecimalTypeInfo) type,
+                        (HiveDecimalObjectInspector) primitiveInspector);
+            default:
+                return new ObjectColumn(index, jsonInspector);
+        }
+    }
+
+    StructObjectInspector getObjectInspector() {
+        return rowObjectInspector;
+    }
+
+    /**
+     * Parses the object or array at the tokener's position into the row.
+     * Arrays are read positionally, one value per column.
+     *
+     * @return the row
+     * @throws JSONException if the row is malformed
+     */
+    List<Object> parse(JSONByteTokener tokener) throws JSONException {
+        Arrays.fill(row, null);
+        if (tokener.peekClean() == '[') {
+            JSONArray values = (JSONArray) tokener.nextValue();
+            for (int i = 0; i < columns.length && i < values.length(); i++) {
+                if (columns[i] != null) {
+                    columns[i].set(values.opt(i));
+                }
+            }
+            return rowList;
+        }
+
+        tokener.beginObject();
+        for (int id; (id = tokener.nextKey(keys)) != JSONByteTokener.END_OF_OBJECT; ) {
+            if (id == JSONKeyIndex.NOT_FOUND) {
+                tokener.skipValue();
+            } else if (keyColumns[id].length == 1) {
+                columns[keyColumns[id][0]].read(tokener);
+            } else {
+                Object value = tokener.nextValue();
+                for (int column : keyColumns[id]) {
+                    columns[column].set(value);
+                }
+            }
+        }
+        return rowList;
+    }
+
+    /**
+     * Returns the row with all columns set to null, for rows that couldn't
+     * be parsed.
+     */
+    List<Object> emptyRow() {
+        Arrays.fill(row, null);
+        return rowList;
+    }
+
+    /**
+     * Converts the values of one column into the row.
+     */
+    private abstract class Column {
+        final int index;
+        // the nested fields to read, null for all
+        JSONFieldSelector selector;
+
+        Column(int index) {
+            this.index = index;
+        }
+
+        abstract ObjectInspector getObjectInspector();
+
+        /**
+         * Reads the next value of the tokener into the row.
+         */
+        void read(JSONByteTokener tokener) throws JSONException {
+            set(tokener.nextValue(selector));
+        }
+
+        /**
+         * Converts a parsed value into the row.
+         */
+        void set(Object value) {
+            if (value == null || value == JSONObject.NULL) {
+                row[index] = null;
+            } else {
+                row[index] = convert(value);
+            }
+        }
+
+        abstract Object convert(Object value);
+    }
+
+    private final class BooleanColumn extends Column {
+        private final PrimitiveObjectInspector jsonInspector;
+        private final BooleanWritable writable = new BooleanWritable();
+
+        BooleanColumn(int index, PrimitiveObjectInspector jsonInspector) {
+            super(index);
+            this.jsonInspector = jsonInspector;
+        }
+
+        @Override
+        ObjectInspector getObjectInspector() {
+            return PrimitiveObjectInspectorFactory.writableBooleanObjectInspector;
+        }
+
+        @Override
+        Object convert(Object value) {
+            writable.set(PrimitiveObjectInspectorUtils.getBoolean(value, jsonInspector));
+            return writable;
+        }
+    }
+
+    private final class IntegerColumn extends Column {
+        private final PrimitiveObjectInspector jsonInspector;
+        private final PrimitiveCategory category;
+        private final ByteWritable byteWritable = new ByteWritable();
+        private final ShortWritable shortWritable = new ShortWritable();
+        private final IntWritable intWritable = new IntWritable();
+        private final LongWritable longWritable = new LongWritable();
+
+        IntegerColumn(int index, PrimitiveObjectInspector jsonInspector) {
+            super(index);
+            this.jsonInspector = jsonInspector;
+            this.category = jsonInspector.getPrimitiveCategory();
+        }
+
+        @Override
+        ObjectInspector getObjectInspector() {
+            return PrimitiveObjectInspectorFactory.getPrimitiveWritableObjectInspector(category);
+        }
+
+        @Override
+        void read(JSONByteTokener tokener) throws JSONException {
+            if (tokener.nextLongLiteral()) {
+                row[index] = convert(tokener.longValue());
+            } else {
+                super.read(tokener);
+            }
+        }
+
+        @Override
+        Object convert(Object value) {
+            return convert(PrimitiveObjectInspectorUtils.getLong(value, jsonInspector));
+        }
+
+        // narrows the value the way Long.intValue() and the like do
+        private Object convert(long value) {
+            switch (category) {
+                case BYTE:
+                    byteWritable.set((byte) value);
+                    return byteWritable;
+                case SHORT:
+                    shortWritable.set((short) value);
+                    return shortWritable;
+                case INT:
+                    intWritable.set((int) value);
+                    return intWritable;
+                default:
+                    longWritable.set(value);
+                    return longWritable;
+            }
+        }
+    }
+
+    private final class FloatColumn extends Column {
+        private final PrimitiveObjectInspector jsonInspector;
+        private final FloatWritable writable = new FloatWritable();
+
+        FloatColumn(int index, PrimitiveObjectInspector jsonInspector) {
+            super(index);
+            this.jsonInspector = jsonInspector;
+        }
+
+        @Override
+        ObjectInspector getObjectInspector() {
+            return PrimitiveObjectInspectorFactory.writableFloatObjectInspector;
+        }
+
+        @Override
+        void read(JSONByteTokener tokener) throws JSONException {
+            if (tokener.nextLongLiteral()) {
+                writable.set((float) tokener.longValue());
+                row[index] = writable;
+            } else {
+                super.read(tokener);
+            }
+        }
+
+        @Override
+        Object convert(Object value) {
+            writable.set(PrimitiveObjectInspectorUtils.getFloat(value, jsonInspector));
+            return writable;
+        }
+    }
+
+    private final class DoubleColumn extends Column {
+        private final PrimitiveObjectInspector jsonInspector;
+        private final DoubleWritable writable = new DoubleWritable();
+
+        DoubleColumn(int index, PrimitiveObjectInspector jsonInspector) {
+            super(index);
+            this.jsonInspector = jsonInspector;
+        }
+
+        @Override
+        ObjectInspector getObjectInspector() {
+            return PrimitiveObjectInspectorFactory.writableDoubleObjectInspector;
+        }
+
+        @Override
+        void read(JSONByteTokener tokener) throws JSONException {
+            if (tokener.nextDoubleLiteral()) {
+                writable.set(tokener.doubleValue());
+                row[index] = writable;
+            } else {
+                super.read(tokener);
+            }
+        }
+
+        @Override
+        Object convert(Object value) {
+            writable.set(PrimitiveObjectInspectorUtils.getDouble(value, jsonInspector));
+            return writable;
+        }
+    }
+
+    private final class StringColumn extends Column {
+        private final Text writable = new Text();
+
+        StringColumn(int index) {
+            super(index);
+        }
+
+        @Override
+        ObjectInspector getObjectInspector() {
+            return PrimitiveObjectInspectorFactory.writableStringObjectInspector;
+        }
+
+        // objects and arrays are read as their JSON text
+        @Override
+        Object convert(Object value) {
+            writable.set(value.toString());
+            return writable;
+        }
+    }
+
+    private final class TimestampColumn extends Column {
+        private final TimestampObjectInspector jsonInspector;
+        private final TimestampWritableV2 writable = new TimestampWritableV2();
+
+        TimestampColumn(int index, TimestampObjectInspector jsonInspector) {
+            super(index);
+            this.jsonInspector = jsonInspector;
+        }
+
+        @Override
+        ObjectInspector getObjectInspector() {
+            return PrimitiveObjectInspectorFactory.writableTimestampObjectInspector;
+        }
+
+        @Override
+        Object convert(Object value) {
+            Timestamp timestamp = jsonInspector.getPrimitiveJavaObject(value);
+            if (timestamp == null) {
+                return null;
+            }
+            writable.set(timestamp);
+            return writable;
+        }
+    }
+
+    private final class DecimalColumn extends Column {
+        private final DecimalTypeInfo type;
+        private final HiveDecimalObjectInspector jsonInspector;
+        private final HiveDecimalWritable writable = new HiveDecimalWritable();
+
+        DecimalColumn(int index, DecimalTypeInfo type, HiveDecimalObjectInspector jsonInspector) {
+            super(index);
+            this.type = type;
+            this.jsonInspector = jsonInspector;
+        }
+
+        @Override
+        ObjectInspector getObjectInspector() {
+            return PrimitiveObjectInspectorFactory.getPrimitiveWritableObjectInspector(type);
+        }
+
+        // numbers are read from their text, rather than from a double
+        @Override
+        void read(JSONByteTokener tokener) throws JSONException {
+            if (tokener.nextNumberLiteral()) {
+                writable.setFromBytes(tokener.input(), tokener.numberOffset(), tokener.numberLength());
+                row[index] = writable.mutateEnforcePrecisionScale(type.getPrecision(), type.getScale())
+                        ? writable : null;
+            } else {
+                super.read(tokener);
+            }
+        }
+
+        @Override
+        Object convert(Object value) {
+            HiveDecimal decimal = jsonInspector.getPrimitiveJavaObject(value);
+            if (decimal == null) {
+                return null;
+            }
+            writable.set(decimal);
+            return writable;
+        }
+    }
+
+    /**
+     * Keeps values as parsed, for the JSON object inspector of the column.
+     */
+    private final class ObjectColumn extends Column {
+        private final ObjectInspector jsonInspector;
+
+        ObjectColumn(int index, ObjectInspector jsonInspector) {
+            super(index);
+            this.jsonInspector = jsonInspector;
+        }
+
+        @Override
+        ObjectInspector getObjectInspector() {
+            return jsonInspector;
+        }
+
+        @Override
+        Object convert(Object value) {
+            return value;
+        }
+    }
+}
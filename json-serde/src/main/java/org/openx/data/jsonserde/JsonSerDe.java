@@ -14,12 +14,16 @@
 package org.openx.data.jsonserde;
 
 import io.starburst.openjson.JSONArray;
+import io.starburst.openjson.JSONByteTokener;
 import io.starburst.openjson.JSONException;
+import io.starburst.openjson.JSONFieldSelector;
 import io.starburst.openjson.JSONObject;
+import io.starburst.openjson.JSONTape;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.serde.serdeConstants;
+import org.apache.hadoop.hive.serde2.ColumnProjectionUtils;
 import org.apache.hadoop.hive.serde2.AbstractSerDe;
 import org.apache.hadoop.hive.serde2.SerDeException;
 import org.apache.hadoop.hive.serde2.SerDeStats;
@@ -40,6 +44,7 @@ import org.apache.hadoop.hive.serde2.objectinspector.primitive.LongObjectInspect
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.ShortObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.StringObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.TimestampObjectInspector;
+import org.apache.hadoop.hive.serde2.typeinfo.ListTypeInfo;
 import org.apache.hadoop.hive.serde2.typeinfo.StructTypeInfo;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
@@ -52,15 +57,30 @@ import org.openx.data.jsonserde.objectinspector.primitive.ParsePrimitiveUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 /**
  * Properties:
  * ignore.malformed.json = true/false : malformed json will be ignored
  *         instead of throwing an exception
+ * lazy.parsing = true/false : index each row and only decode the values
+ *         that are read. Values are valid until the next row is deserialized
+ * projection.pushdown = true/false : only materialize the keys of the
+ *         columns and nested fields Hive reads, skipping over all other values
+ * compiled.parsing = true/false : parse rows straight into reused Hive rows
+ *         of writables instead of JSONObjects. Ignored with dots.in.keys
+ * reuse.writables = true/false : primitive inspectors hand each thread the
+ *         same writable, valid until that thread asks the same inspector
+ *         for its next writable
+ * datetime.cache.size = n : keep the timestamps and dates parsed from the
+ *         last n distinct strings of each column type, so repeated values
+ *         are parsed once. 0, the default, keeps none
  * 
  * @author rcongiu
  */
@@ -80,6 +100,14 @@ public class JsonSerDe extends AbstractSerDe {
     private boolean ignoreMalformedJson = false;
     private boolean explicitNull = false;
     private boolean isCaseInsensitive = true;
+    // parses the raw UTF-8 bytes of each row, reused across rows
+    private JSONByteTokener tokener;
+    // keys to materialize when only some columns are read, null for all
+    private JSONFieldSelector fieldSelector;
+    // indexes rows and decodes values on demand, null unless lazy parsing is on
+    private JSONTape tape;
+    // parses rows into Hive rows, null unless compiled parsing is on
+    private JsonRowParser rowParser;
 
     // properties used in configuration
     public static final String PROP_IGNORE_MALFORMED_JSON = "ignore.malformed.json";
@@ -87,6 +115,11 @@ public class JsonSerDe extends AbstractSerDe {
     public static final String PROP_CASE_INSENSITIVE ="case.insensitive" ;
     public static final String PROP_EXPLICIT_NULL ="explicit.null" ;
     public static final String PROP_TIMESTAMP_FORMATS = "timestamp.formats";
+    public static final String PROP_PROJECTION_PUSHDOWN = "projection.pushdown";
+    public static final String PROP_LAZY_PARSING = "lazy.parsing";
+    public static final String PROP_COMPILED_PARSING = "compiled.parsing";
+    public static final String PROP_REUSE_WRITABLES = "reuse.writables";
+    public static final String PROP_DATETIME_CACHE_SIZE = "datetime.cache.size";
 
     JsonStructOIOptions options;
 
@@ -108,46 +141,34 @@ public class JsonSerDe extends AbstractSerDe {
         
         LOG.debug("columns " + columnNameProperty + " types " + columnTypeProperty);
 
-        // all table column names
-        if (columnNameProperty.length() == 0) {
-            columnNames = new ArrayList<String>();
-        } else {
-            columnNames = Arrays.asList(columnNameProperty.split(","));
+        // partitions of a table share their schema, options and inspector
+        isCaseInsensitive = Boolean.parseBoolean(tbl.getProperty(PROP_CASE_INSENSITIVE, "true"));
+        Map<String, String> mappingProperties = getMappingProperties(tbl);
+        List<Object> schemaKey = Arrays.<Object>asList(columnNameProperty, columnTypeProperty,
+                tbl.getProperty(serdeConstants.SERIALIZATION_SORT_ORDER), isCaseInsensitive,
+                tbl.getProperty(PROP_DOTS_IN_KEYS), tbl.getProperty(PROP_TIMESTAMP_FORMATS),
+                tbl.getProperty(PROP_REUSE_WRITABLES), tbl.getProperty(PROP_DATETIME_CACHE_SIZE),
+                mappingProperties);
+        Schema schema;
+        synchronized (schemas) {
+            schema = schemas.get(schemaKey);
         }
-
-        // all column types
-        if (columnTypeProperty.length() == 0) {
-            columnTypes = new ArrayList<TypeInfo>();
-        } else {
-            columnTypes = TypeInfoUtils.getTypeInfosFromTypeString(columnTypeProperty);
+        if (schema == null) {
+            schema = new Schema(tbl, columnNameProperty, columnTypeProperty,
+                    getMappings(mappingProperties, isCaseInsensitive), isCaseInsensitive);
+            synchronized (schemas) {
+                schemas.put(schemaKey, schema);
+            }
         }
-        assert columnNames.size() == columnTypes.size();
+        columnNames = schema.columnNames;
+        columnTypes = schema.columnTypes;
+        rowTypeInfo = schema.rowTypeInfo;
+        columnSortOrderIsDesc = schema.columnSortOrderIsDesc;
+        options = schema.options;
+        rowObjectInspector = schema.rowObjectInspector;
 
         stats = new SerDeStats();
-
-        // Create row related objects
-        rowTypeInfo = (StructTypeInfo) TypeInfoFactory
-                .getStructTypeInfo(columnNames, columnTypes);
-        
-        // build options
-        isCaseInsensitive = Boolean.parseBoolean(tbl.getProperty(PROP_CASE_INSENSITIVE, "true"));
-        options = new JsonStructOIOptions(getMappings(tbl, isCaseInsensitive));
-        options.setCaseInsensitive(isCaseInsensitive);
-
-        // Get the sort order
-        String columnSortOrder = tbl.getProperty(serdeConstants.SERIALIZATION_SORT_ORDER);
-        columnSortOrderIsDesc = new boolean[columnNames.size()];
-        for (int i = 0; i < columnSortOrderIsDesc.length; i++) {
-            columnSortOrderIsDesc[i] = columnSortOrder != null && 
-                    columnSortOrder.charAt(i) == '-';
-        }
-
-        // dots in key names. Substitute with underscores
-        options.setDotsInKeyNames(Boolean.parseBoolean(tbl.getProperty(PROP_DOTS_IN_KEYS,"false")));
-        options.setTimestampFormats(tbl.getProperty(PROP_TIMESTAMP_FORMATS));
-
-        rowObjectInspector = (StructObjectInspector) JsonObjectInspectorFactory
-                .getJsonObjectInspectorFromTypeInfo(rowTypeInfo, options);
+        tokener = new JSONByteTokener(isCaseInsensitive);
 
         // other configuration
         ignoreMalformedJson = Boolean.parseBoolean(tbl
@@ -155,6 +176,214 @@ public class JsonSerDe extends AbstractSerDe {
 
         explicitNull = Boolean.parseBoolean(tbl
                 .getProperty(PROP_EXPLICIT_NULL, "false"));
+
+        tape = Boolean.parseBoolean(tbl.getProperty(PROP_LAZY_PARSING, "false"))
+                ? new JSONTape(isCaseInsensitive) : null;
+
+        // skip the values of columns the query doesn't read
+        List<String> readPaths = null;
+        if (Boolean.parseBoolean(tbl.getProperty(PROP_PROJECTION_PUSHDOWN, "false"))) {
+            readPaths = getReadPaths(conf);
+        }
+        fieldSelector = readPaths == null ? null : getFieldSelector(rowTypeInfo, readPaths);
+
+        rowParser = null;
+        if (Boolean.parseBoolean(tbl.getProperty(PROP_COMPILED_PARSING, "false"))) {
+            if (options.isDotsInKeyNames()) {
+                LOG.warn(PROP_COMPILED_PARSING + " is not supported with " + PROP_DOTS_IN_KEYS
+                        + ", parsing rows into JSON objects");
+            } else {
+                rowParser = new JsonRowParser(rowTypeInfo, options,
+                        readPaths == null ? null : getFieldSelectors(rowTypeInfo, readPaths));
+                rowObjectInspector = rowParser.getObjectInspector();
+            }
+        }
+    }
+
+    /*
+     * The schemas of the tables initialized last, by the properties they are
+     * built from, so that each partition of a table doesn't parse its types
+     * and look up its inspectors again.
+     */
+    static final int MAX_CACHED_SCHEMAS = 1024;
+
+    static final Map<List<Object>, Schema> schemas = new LinkedHashMap<List<Object>, Schema>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, Schema> eldest) {
+            return size() > MAX_CACHED_SCHEMAS;
+        }
+    };
+
+    /**
+     * The columns of a table and what is built from them and the table
+     * properties. Shared by SerDes, so never modified.
+     */
+    static final class Schema {
+        final List<String> columnNames;
+        final List<TypeInfo> columnTypes;
+        final StructTypeInfo rowTypeInfo;
+        final boolean[] columnSortOrderIsDesc;
+        final JsonStructOIOptions options;
+        final StructObjectInspector rowObjectInspector;
+
+        Schema(Properties tbl, String columnNameProperty, String columnTypeProperty,
+                Map<String, String> mappings, boolean isCaseInsensitive) {
+            // all table column names
+            if (columnNameProperty.length() == 0) {
+                columnNames = new ArrayList<String>();
+            } else {
+                columnNames = Arrays.asList(columnNameProperty.split(","));
+            }
+
+            // all column types
+            if (columnTypeProperty.length() == 0) {
+                columnTypes = new ArrayList<TypeInfo>();
+            } else {
+                columnTypes = TypeInfoUtils.getTypeInfosFromTypeString(columnTypeProperty);
+            }
+            assert columnNames.size() == columnTypes.size();
+
+            // Create row related objects
+            rowTypeInfo = (StructTypeInfo) TypeInfoFactory
+                    .getStructTypeInfo(columnNames, columnTypes);
+
+            // build options
+            options = new JsonStructOIOptions(mappings);
+            options.setCaseInsensitive(isCaseInsensitive);
+
+            // Get the sort order
+            String columnSortOrder = tbl.getProperty(serdeConstants.SERIALIZATION_SORT_ORDER);
+            columnSortOrderIsDesc = new boolean[columnNames.size()];
+            for (int i = 0; i < columnSortOrderIsDesc.length; i++) {
+                columnSortOrderIsDesc[i] = columnSortOrder != null &&
+                        columnSortOrder.charAt(i) == '-';
+            }
+
+            // dots in key names. Substitute with underscores
+            options.setDotsInKeyNames(Boolean.parseBoolean(tbl.getProperty(PROP_DOTS_IN_KEYS,"false")));
+            options.setTimestampFormats(tbl.getProperty(PROP_TIMESTAMP_FORMATS));
+            options.setReuseWritables(Boolean.parseBoolean(tbl.getProperty(PROP_REUSE_WRITABLES, "false")));
+            options.setDatetimeCacheSize(Integer.parseInt(tbl.getProperty(PROP_DATETIME_CACHE_SIZE, "0").trim()));
+
+            rowObjectInspector = (StructObjectInspector) JsonObjectInspectorFactory
+                    .getJsonObjectInspectorFromTypeInfo(rowTypeInfo, options);
+        }
+    }
+
+    /**
+     * Lists the columns Hive asked to read. When Hive also passes nested
+     * column paths, only the referenced subfields of struct columns are
+     * listed.
+     * @param conf Hadoop configuration object, may be null
+     * @return dot separated column and field names, or null if all columns
+     *         are read
+     */
+    private List<String> getReadPaths(Configuration conf) {
+        if (conf == null || ColumnProjectionUtils.isReadAllColumns(conf)) {
+            return null;
+        }
+
+        String[] readColumns = ColumnProjectionUtils.getReadColumnNames(conf);
+        Set<String> nestedPaths = ColumnProjectionUtils.getNestedColumnPaths(conf);
+        LOG.debug("Reading only columns " + Arrays.toString(readColumns) + ", paths " + nestedPaths);
+
+        List<String> paths = new ArrayList<String>();
+        for (String column : readColumns) {
+            String prefix = column.toLowerCase() + ".";
+            boolean nested = false;
+            for (String path : nestedPaths) {
+                if (path.equalsIgnoreCase(column) || path.toLowerCase().startsWith(prefix)) {
+                    paths.add(path);
+                    nested = true;
+                }
+            }
+            if (!nested) {
+                paths.add(column);
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Builds the selector for the values of a struct, or for the structs in
+     * a list, that materializes only the given paths.
+     * @param type the type of the value
+     * @param paths dot separated field names, relative to the value
+     * @return the selector, or null if the whole value must be read
+     */
+    private JSONFieldSelector getFieldSelector(TypeInfo type, List<String> paths) {
+        boolean listElements = false;
+        if (type.getCategory() == Category.LIST) {
+            type = ((ListTypeInfo) type).getListElementTypeInfo();
+            listElements = true;
+        }
+        if (type.getCategory() != Category.STRUCT) {
+            return null;
+        }
+        Map<String, JSONFieldSelector> fields = getFieldSelectors((StructTypeInfo) type, paths);
+        if (fields == null) {
+            return null;
+        }
+
+        JSONFieldSelector selector = new JSONFieldSelector(isCaseInsensitive,
+                options.isDotsInKeyNames(), listElements);
+        for (Map.Entry<String, JSONFieldSelector> entry : fields.entrySet()) {
+            String field = entry.getKey();
+            JSONFieldSelector nested = entry.getValue();
+
+            if (options.getMappings().containsKey(field)) {
+                selector.select(options.getMappings().get(field), nested);
+            } else {
+                selector.select(field, nested);
+            }
+            if (options.isDotsInKeyNames()) {
+                // keys like a.b are read as field a_b
+                selector.select(field, nested);
+            }
+        }
+        return selector;
+    }
+
+    /**
+     * Finds the fields of a struct that the given paths read.
+     * @param structType the type of the struct
+     * @param paths dot separated field names, relative to the struct
+     * @return the names of the fields to read, mapped to the selector for
+     *         their values or to null if they are read whole. Null if the
+     *         whole struct must be read
+     */
+    private Map<String, JSONFieldSelector> getFieldSelectors(StructTypeInfo structType, List<String> paths) {
+        // group the paths by the field they start with
+        Map<String, List<String>> fieldPaths = new LinkedHashMap<String, List<String>>();
+        for (String path : paths) {
+            int dot = path.indexOf('.');
+            String field = getStructFieldName(structType, dot == -1 ? path : path.substring(0, dot));
+            if (field == null) {
+                // not a path we understand, read it all
+                return null;
+            }
+            if (!fieldPaths.containsKey(field)) {
+                fieldPaths.put(field, new ArrayList<String>());
+            }
+            fieldPaths.get(field).add(dot == -1 ? "" : path.substring(dot + 1));
+        }
+
+        Map<String, JSONFieldSelector> fields = new LinkedHashMap<String, JSONFieldSelector>();
+        for (Map.Entry<String, List<String>> entry : fieldPaths.entrySet()) {
+            String field = entry.getKey();
+            fields.put(field, entry.getValue().contains("") ? null
+                    : getFieldSelector(structType.getStructFieldTypeInfo(field), entry.getValue()));
+        }
+        return fields;
+    }
+
+    private static String getStructFieldName(StructTypeInfo type, String name) {
+        for (String field : type.getAllStructFieldNames()) {
+            if (field.equalsIgnoreCase(name)) {
+                return field;
+            }
+        }
+        return null;
     }
 
     /**
@@ -162,29 +391,46 @@ public class JsonSerDe extends AbstractSerDe {
      * parse its text
      * 
      * @param w the text to parse
-     * @return a JSONObject
+     * @return a JSONObject, or a row of writables with compiled parsing
      * @throws SerDeException 
      */
     @Override
     public Object deserialize(Writable w) throws SerDeException {
         Text rowText = (Text) w;
-        deserializedDataSize = rowText.getBytes().length;
+        deserializedDataSize = rowText.getLength();
 	
         // Try parsing row into JSON object
         Object jObj = null;
         
         try {
-            String txt = rowText.toString().trim();
-            
-            if(txt.startsWith("{")) {
-                jObj = new JSONObject(isCaseInsensitive, txt);
-            } else if (txt.startsWith("[")){
-                jObj = new JSONArray(isCaseInsensitive, txt);
+            // parse the UTF-8 bytes in place, skipping leading whitespace
+            // the way String.trim() would
+            byte[] bytes = rowText.getBytes();
+            int length = rowText.getLength();
+            int start = 0;
+            while (start < length && (bytes[start] & 0xFF) <= ' ') {
+                start++;
+            }
+
+            if (start < length && (bytes[start] == '{' || bytes[start] == '[')) {
+                if (rowParser != null) {
+                    return rowParser.parse(tokener.reset(bytes, start, length - start));
+                }
+                if (tape != null) {
+                    // null if the row needs the lenient tokener
+                    jObj = tape.parse(bytes, start, length - start);
+                }
+                if (jObj == null) {
+                    jObj = tokener.reset(bytes, start, length - start).nextValue(fieldSelector);
+                }
             }
         } catch (JSONException e) {
             // If row is not a JSON object, make the whole row NULL
             onMalformedJson("Row is not a valid JSON Object - JSONException: "
                     + e.getMessage());
+            if (rowParser != null) {
+                return rowParser.emptyRow();
+            }
             try {
                 jObj = new JSONObject(isCaseInsensitive, "{}");
             } catch (JSONException ex) {
@@ -443,27 +689,44 @@ public class JsonSerDe extends AbstractSerDe {
    
     public static final String PFX = "mapping.";
     /**
-     * Builds mappings between hive columns and json attributes
+     * Collects the mapping properties as they are written, keyed by the
+     * hive column they map. Cheap enough to run before the schema lookup.
      * 
      * @param tbl
      * @return 
      */
-    private Map<String, String> getMappings(Properties tbl, boolean isCaseInsensitive) {
+    private static Map<String, String> getMappingProperties(Properties tbl) {
         int n = PFX.length();
-        Map<String,String> mps = new HashMap<String,String>();
+        Map<String,String> mps = Collections.emptyMap();
         
         for(Object o: tbl.keySet()) {
             if( ! (o instanceof String)) { continue ; }
             String s = (String) o;
             
             if(s.startsWith(PFX) ) {
-                String fieldTo = tbl.getProperty(s);
-                mps.put(s.substring(n), (isCaseInsensitive ? fieldTo.toLowerCase(): fieldTo));
+                if(mps.isEmpty()) { mps = new HashMap<String,String>(); }
+                mps.put(s.substring(n), tbl.getProperty(s));
             }
         }
         return mps;
     }
 
+    /**
+     * Builds mappings between hive columns and json attributes
+     * 
+     * @param mappingProperties
+     * @return 
+     */
+    private static Map<String, String> getMappings(Map<String, String> mappingProperties, boolean isCaseInsensitive) {
+        Map<String,String> mps = new HashMap<String,String>();
+        
+        for(Map.Entry<String, String> e: mappingProperties.entrySet()) {
+            String fieldTo = e.getValue();
+            mps.put(e.getKey(), (isCaseInsensitive ? fieldTo.toLowerCase(): fieldTo));
+        }
+        return mps;
+    }
+
 
     
 }
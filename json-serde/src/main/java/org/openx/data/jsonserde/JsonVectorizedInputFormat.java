@@ -0,0 +1,71 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+
+
+package org.openx.data.jsonserde;
+
+import org.apache.hadoop.hive.ql.exec.Utilities;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedInputFormatInterface;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatchCtx;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedSupport;
+import org.apache.hadoop.hive.ql.io.HiveFileFormatUtils;
+import org.apache.hadoop.hive.ql.plan.MapWork;
+import org.apache.hadoop.hive.ql.plan.PartitionDesc;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.TextInputFormat;
+
+import java.io.IOException;
+
+/**
+ * Text input format for JSON tables that lets Hive read them with
+ * vectorized execution. In vectorized mode, lines are parsed with the
+ * table's JsonSerDe settings straight into column vectors; otherwise this
+ * behaves like TextInputFormat.
+ *
+ * Usage:
+ * CREATE TABLE ... ROW FORMAT SERDE 'org.openx.data.jsonserde.JsonSerDe'
+ * STORED AS INPUTFORMAT 'org.openx.data.jsonserde.JsonVectorizedInputFormat'
+ * OUTPUTFORMAT 'org.apache.hadoop.hive.ql.io.HiveIgnoreKeyTextOutputFormat';
+ */
+public class JsonVectorizedInputFormat extends TextInputFormat implements VectorizedInputFormatInterface {
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public RecordReader<LongWritable, Text> getRecordReader(InputSplit split, JobConf job, Reporter reporter)
+            throws IOException {
+        if (!Utilities.getIsVectorized(job)) {
+            return super.getRecordReader(split, job, reporter);
+        }
+        reporter.setStatus(split.toString());
+
+        FileSplit fileSplit = (FileSplit) split;
+        MapWork mapWork = Utilities.getMapWork(job);
+        PartitionDesc partition = HiveFileFormatUtils.getFromPathRecursively(
+                mapWork.getPathToPartitionInfo(), fileSplit.getPath(), null);
+        VectorizedRowBatchCtx rowBatchCtx = Utilities.getVectorizedRowBatchCtx(job);
+
+        // the batch has the columns of the table, so parse with its properties
+        return (RecordReader) new JsonVectorizedRecordReader(job, fileSplit, rowBatchCtx,
+                partition.getTableDesc().getProperties());
+    }
+
+    @Override
+    public VectorizedSupport.Support[] getSupportedFeatures() {
+        return new VectorizedSupport.Support[0];
+    }
+}
@@ -0,0 +1,299 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+
+
+package org.openx.data.jsonserde;
+
+import org.apache.hadoop.hive.common.type.Date;
+import org.apache.hadoop.hive.common.type.HiveDecimal;
+import org.apache.hadoop.hive.common.type.Timestamp;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DecimalColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.TimestampColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAssignRow;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatchCtx;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.serde.serdeConstants;
+import org.apache.hadoop.hive.serde2.SerDeException;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.ObjectInspectorCopyOption;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
+import org.apache.hadoop.hive.serde2.objectinspector.StructField;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.BooleanObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.DateObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.HiveDecimalObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.StringObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.TimestampObjectInspector;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.LineRecordReader;
+import org.apache.hadoop.mapred.RecordReader;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Reads JSON lines into batches of column vectors. Each line is parsed by a
+ * JsonSerDe set up with the table properties, with compiled parsing on
+ * unless the table turns it off, and its columns are written into the
+ * vectors of the batch. Values are converted by the same object inspectors
+ * as in row mode, so both modes read the same data.
+ *
+ * Boolean, integer, floating point, string, date, timestamp and decimal
+ * columns are written into their vectors directly; values of other types
+ * are assigned through Hive's VectorAssignRow.
+ */
+class JsonVectorizedRecordReader implements RecordReader<NullWritable, VectorizedRowBatch> {
+
+    private final LineRecordReader lines;
+    private final LongWritable lineKey;
+    private final Text line;
+
+    private final VectorizedRowBatchCtx rowBatchCtx;
+    private final Object[] partitionValues;
+    private boolean addPartitionColumns = true;
+
+    private final JsonSerDe serDe;
+    private final StructObjectInspector rowObjectInspector;
+    private final StructField[] fields;
+    private final ObjectInspector[] fieldInspectors;
+    // the primitive category of each column, null for other types
+    private final PrimitiveCategory[] categories;
+    // the columns Hive reads; the vectors of the others are null
+    private final int[] projectedColumns;
+    private final VectorAssignRow assignRow = new VectorAssignRow();
+
+    /**
+     * @param job the job configuration, with the columns Hive reads
+     * @param split the part of the file to read
+     * @param rowBatchCtx describes the batches Hive expects
+     * @param tbl the table properties
+     */
+    JsonVectorizedRecordReader(JobConf job, FileSplit split, VectorizedRowBatchCtx rowBatchCtx,
+            Properties tbl) throws IOException {
+        this.rowBatchCtx = rowBatchCtx;
+
+        int columnCount = rowBatchCtx.getDataColumnCount();
+        String[] names = rowBatchCtx.getRowColumnNames();
+        TypeInfo[] types = rowBatchCtx.getRowColumnTypeInfos();
+        StringBuilder columnNames = new StringBuilder();
+        StringBuilder columnTypes = new StringBuilder();
+        for (int i = 0; i < columnCount; i++) {
+            columnNames.append(i == 0 ? "" : ",").append(names[i]);
+            columnTypes.append(i == 0 ? "" : ":").append(types[i].getTypeName());
+        }
+
+        Properties properties = new Properties();
+        properties.putAll(tbl);
+        properties.setProperty(serdeConstants.LIST_COLUMNS, columnNames.toString());
+        properties.setProperty(serdeConstants.LIST_COLUMN_TYPES, columnTypes.toString());
+        if (!properties.containsKey(JsonSerDe.PROP_COMPILED_PARSING)) {
+            // rows never leave this reader, so they can be reused
+            properties.setProperty(JsonSerDe.PROP_COMPILED_PARSING, "true");
+        }
+
+        try {
+            serDe = new JsonSerDe();
+            serDe.initialize(job, properties);
+            rowObjectInspector = (StructObjectInspector) serDe.getObjectInspector();
+            assignRow.init(rowObjectInspector);
+        } catch (SerDeException | HiveException e) {
+            throw new IOException(e);
+        }
+
+        List<? extends StructField> fieldRefs = rowObjectInspector.getAllStructFieldRefs();
+        fields = fieldRefs.toArray(new StructField[columnCount]);
+        fieldInspectors = new ObjectInspector[columnCount];
+        categories = new PrimitiveCategory[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            fieldInspectors[i] = fields[i].getFieldObjectInspector();
+            if (fieldInspectors[i] instanceof PrimitiveObjectInspector) {
+                categories[i] = ((PrimitiveObjectInspector) fieldInspectors[i]).getPrimitiveCategory();
+            }
+        }
+
+        int[] dataColumnNums = rowBatchCtx.getDataColumnNums();
+        if (dataColumnNums == null) {
+            dataColumnNums = new int[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                dataColumnNums[i] = i;
+            }
+        }
+        projectedColumns = dataColumnNums;
+
+        if (rowBatchCtx.getPartitionColumnCount() > 0) {
+            partitionValues = new Object[rowBatchCtx.getPartitionColumnCount()];
+            VectorizedRowBatchCtx.getPartitionValues(rowBatchCtx, job, split, partitionValues);
+        } else {
+            partitionValues = null;
+        }
+
+        lines = new LineRecordReader(job, split);
+        lineKey = lines.createKey();
+        line = lines.createValue();
+    }
+
+    @Override
+    public boolean next(NullWritable key, VectorizedRowBatch batch) throws IOException {
+        if (addPartitionColumns) {
+            if (partitionValues != null) {
+                rowBatchCtx.addPartitionColsToBatch(batch, partitionValues);
+            }
+            addPartitionColumns = false;
+        }
+
+        for (int column : projectedColumns) {
+            batch.cols[column].reset();
+        }
+        batch.selectedInUse = false;
+        batch.size = 0;
+
+        while (batch.size < batch.getMaxSize() && lines.next(lineKey, line)) {
+            Object row;
+            try {
+                row = serDe.deserialize(line);
+            } catch (SerDeException e) {
+                throw new IOException(e);
+            }
+            for (int column : projectedColumns) {
+                assign(batch, batch.size, column, rowObjectInspector.getStructFieldData(row, fields[column]));
+            }
+            batch.size++;
+        }
+        return batch.size > 0;
+    }
+
+    /**
+     * Writes the value of a column into its vector.
+     */
+    private void assign(VectorizedRowBatch batch, int batchIndex, int column, Object value) {
+        ColumnVector vector = batch.cols[column];
+        if (value == null) {
+            setNull(vector, batchIndex);
+            return;
+        }
+
+        ObjectInspector inspector = fieldInspectors[column];
+        if (categories[column] == null) {
+            assignObject(batch, batchIndex, column, value);
+            return;
+        }
+        PrimitiveObjectInspector primitiveInspector = (PrimitiveObjectInspector) inspector;
+        switch (categories[column]) {
+            case BOOLEAN:
+                ((LongColumnVector) vector).vector[batchIndex] =
+                        ((BooleanObjectInspector) inspector).get(value) ? 1 : 0;
+                break;
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+                ((LongColumnVector) vector).vector[batchIndex] =
+                        PrimitiveObjectInspectorUtils.getLong(value, primitiveInspector);
+                break;
+            case FLOAT:
+            case DOUBLE:
+                ((DoubleColumnVector) vector).vector[batchIndex] =
+                        PrimitiveObjectInspectorUtils.getDouble(value, primitiveInspector);
+                break;
+            case STRING: {
+                Text text = ((StringObjectInspector) inspector).getPrimitiveWritableObject(value);
+                ((BytesColumnVector) vector).setVal(batchIndex, text.getBytes(), 0, text.getLength());
+                break;
+            }
+            case DATE: {
+                Date date = ((DateObjectInspector) inspector).getPrimitiveJavaObject(value);
+                if (date == null) {
+                    setNull(vector, batchIndex);
+                } else {
+                    ((LongColumnVector) vector).vector[batchIndex] = date.toEpochDay();
+                }
+                break;
+            }
+            case TIMESTAMP: {
+                Timestamp timestamp = ((TimestampObjectInspector) inspector).getPrimitiveJavaObject(value);
+                if (timestamp == null) {
+                    setNull(vector, batchIndex);
+                } else {
+                    TimestampColumnVector timestamps = (TimestampColumnVector) vector;
+                    timestamps.time[batchIndex] = timestamp.toEpochMilli();
+                    timestamps.nanos[batchIndex] = timestamp.getNanos();
+                }
+                break;
+            }
+            case DECIMAL: {
+                HiveDecimal decimal = ((HiveDecimalObjectInspector) inspector).getPrimitiveJavaObject(value);
+                if (decimal == null) {
+                    setNull(vector, batchIndex);
+                } else {
+                    // sets null if the value doesn't fit the column
+                    ((DecimalColumnVector) vector).set(batchIndex, decimal);
+                }
+                break;
+            }
+            default:
+                assignObject(batch, batchIndex, column, value);
+        }
+    }
+
+    /**
+     * Writes a value of any type into its vector, by way of a copy of it in
+     * standard writable objects.
+     */
+    private void assignObject(VectorizedRowBatch batch, int batchIndex, int column, Object value) {
+        assignRow.assignRowColumn(batch, batchIndex, column, ObjectInspectorUtils.copyToStandardObject(
+                value, fieldInspectors[column], ObjectInspectorCopyOption.WRITABLE));
+    }
+
+    private static void setNull(ColumnVector vector, int batchIndex) {
+        vector.noNulls = false;
+        vector.isNull[batchIndex] = true;
+    }
+
+    @Override
+    public NullWritable createKey() {
+        return NullWritable.get();
+    }
+
+    @Override
+    public VectorizedRowBatch createValue() {
+        return rowBatchCtx.createVectorizedRowBatch();
+    }
+
+    @Override
+    public long getPos() throws IOException {
+        return lines.getPos();
+    }
+
+    @Override
+    public void close() throws IOException {
+        lines.close();
+    }
+
+    @Override
+    public float getProgress() throws IOException {
+        return lines.getProgress();
+    }
+}
@@ -12,10 +12,13 @@
 
 package org.openx.data.jsonserde.objectinspector;
 
-import io.starburst.openjson.JSONException;
 import io.starburst.openjson.JSONObject;
 
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -23,29 +26,31 @@ import java.util.Set;
 
 /**
  * JSONObject is technically different from a map, since a json object
- * has string keys and values can be of any kind, while hive could 
+ * has string keys and values can be of any kind, while hive could
  * define a column as map<string,string>. This consistency is left
  * to the user to satisfy.
- * 
- * Since we want to present a map, and we don't want to extract keys
- * and values every time, we keep a cache
- * 
+ *
+ * The adapter is a view of the JSONObject: keys are looked up in the
+ * object, and JSONObject.NULL values are seen as nulls, so reading a
+ * few keys of a large map costs no more than looking them up. Keys are
+ * matched the way the object matches them, ignoring case if it does.
+ * The first change to the map copies it, so the object itself is never
+ * modified; the views returned by keySet, values and entrySet are read
+ * only until then.
+ *
  * @author rcongiu
  */
-/* TODO: having an initialize() that copies everything into a map is expensive
-   and won't work well for large maps. Good enough for now since
-   we seldom - if ever - use maps. */
 public class JSONObjectMapAdapter implements Map {
+    // the members of the object, once the map is changed
     HashMap<String,Object> cache;
     JSONObject jsonObject;
-    
+
     public JSONObjectMapAdapter(JSONObject obj) {
         jsonObject = obj;
-        initialize();
     }
 
     public JSONObjectMapAdapter() {
-        
+
     }
 
     public JSONObject getJSONObject() {
@@ -54,44 +59,42 @@ public class JSONObjectMapAdapter implements Map {
 
     public void setJSONObject(JSONObject jsonObject) {
         this.jsonObject = jsonObject;
-        initialize();
+        cache = null;
     }
-    
-    
+
+
 
     @Override
     public int size() {
-        return jsonObject.length();
+        return cache != null ? cache.size() : jsonObject.length();
     }
 
     @Override
     public boolean isEmpty() {
-        return cache.isEmpty();
+        return size() == 0;
     }
-    
+
+    /**
+     * Copies the members of the object into a map that can be changed.
+     */
     protected final void initialize() {
-        if(cache==null) cache = new HashMap<String,Object>();
-        
+        if(cache != null) return;
+        cache = new HashMap<String,Object>();
+
         for(Iterator<String> i = jsonObject.keys(); i.hasNext(); ) {
             String o = i.next();
-            try {
-                cache.put(o, safeGet(o));
-            } catch (JSONException ex) {
-                // if key does not exist - should not happen
-                throw new RuntimeException("Non existent key - should never happen!");
-            }
+            cache.put(o, safeGet(o));
         }
     }
-    
+
     /**
      * sanitize all the JSONObject.NULL converting them to nulls.
      * @param s
      * @return
-     * @throws JSONException 
      */
-    private Object safeGet(String s) throws JSONException {
+    private Object safeGet(String s) {
 	if(s == null) return null;
-	Object obj = jsonObject.get(s);
+	Object obj = jsonObject.opt(s);
 	if(JSONObject.NULL.equals(obj)) {
 	    return null;
 	} else {
@@ -101,57 +104,131 @@ public class JSONObjectMapAdapter implements Map {
 
     @Override
     public boolean containsKey(Object key) {
-        return cache.containsKey(key);
+        if (cache != null) {
+            return cache.containsKey(key);
+        }
+        return key instanceof String && jsonObject.has((String) key);
     }
 
     @Override
     public boolean containsValue(Object value) {
+        if (cache != null) {
             return cache.containsValue(value);
+        }
+        return values().contains(value);
     }
 
     @Override
     public Object get(Object key) {
-        return cache.get(key);
+        if (cache != null) {
+            return cache.get(key);
+        }
+        return key instanceof String ? safeGet((String) key) : null;
     }
 
     @Override
     public Object put(Object key, Object value) {
+        initialize();
         return cache.put(key.toString(),value);
     }
 
     @Override
     public Object remove(Object key) {
+       initialize();
        return cache.remove(key);
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public void putAll(Map m) {
+        initialize();
         cache.putAll(m);
     }
 
     @Override
     public void clear() {
+        initialize();
         cache.clear();
     }
 
     @Override
     public Set keySet() {
-        return cache.keySet();
+        if (cache != null) {
+            return cache.keySet();
+        }
+        return Collections.unmodifiableSet(jsonObject.keySet());
     }
 
     @Override
     public Collection values() {
-        return cache.values();
+        if (cache != null) {
+            return cache.values();
+        }
+        return new AbstractCollection<Object>() {
+            @Override
+            public Iterator<Object> iterator() {
+                final Iterator<String> keys = jsonObject.keys();
+                return new Iterator<Object>() {
+                    @Override
+                    public boolean hasNext() {
+                        return keys.hasNext();
+                    }
+
+                    @Override
+                    public Object next() {
+                        return safeGet(keys.next());
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return jsonObject.length();
+            }
+        };
     }
 
     @Override
     public Set entrySet() {
-        return cache.entrySet();
+        if (cache != null) {
+            return cache.entrySet();
+        }
+        return new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                final Iterator<String> keys = jsonObject.keys();
+                return new Iterator<Map.Entry<String, Object>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return keys.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<String, Object> next() {
+                        String key = keys.next();
+                        return new AbstractMap.SimpleImmutableEntry<String, Object>(key, safeGet(key));
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return jsonObject.length();
+            }
+        };
     }
 
     public Map<?, ?> getMap() {
-        return cache;
+        return cache != null ? cache : this;
     }
-    
 }
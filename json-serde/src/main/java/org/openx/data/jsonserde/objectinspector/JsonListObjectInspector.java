@@ -13,16 +13,19 @@
 package org.openx.data.jsonserde.objectinspector;
 
 import io.starburst.openjson.JSONArray;
-import io.starburst.openjson.JSONException;
 import io.starburst.openjson.JSONObject;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.StandardListObjectInspector;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
- * @author rcongiu
+ * Looks into JSONArrays. A value that isn't an array is read as a one
+ * element array, without wrapping it in one.
  */
 public class JsonListObjectInspector extends StandardListObjectInspector {
 
@@ -32,60 +35,74 @@ public class JsonListObjectInspector extends StandardListObjectInspector {
 
     @Override
     public List<?> getList(Object data) {
-        if (data == null || JSONObject.NULL.equals(data)) {
+        if (data == null || JSONObject.NULL.equals(data) || isEmptyString(data)) {
             return null;
         }
-        JSONArray array = getJSONArray(data);
-        if(array==null) return null;
-
-        List<Object> al = new ArrayList<Object>(array.length());
-        for (int i = 0; i < array.length(); i++) {
-            al.add(getListElement(data, i));
+        if (!(data instanceof JSONArray)) {
+            return Collections.singletonList(data);
         }
-        return al;
+        return new JSONArrayList((JSONArray) data);
     }
 
     @Override
     public Object getListElement(Object data, int index) {
-        if (data == null) {
-            return null;
-        }
-        JSONArray array = getJSONArray(data);
-        if(array==null) return null;
-
-        try {
-            Object obj = array.get(index);
-            if (JSONObject.NULL == obj) {
-                return null;
-            } else {
-                return obj;
-            }
-        } catch (JSONException ex) {
+        if (data == null || isEmptyString(data)) {
             return null;
         }
+        Object obj = data instanceof JSONArray ? ((JSONArray) data).opt(index)
+                : index == 0 ? data : null;
+        return JSONObject.NULL == obj ? null : obj;
     }
 
     @Override
     public int getListLength(Object data) {
-        if (data == null) {
+        if (data == null || isEmptyString(data)) {
             return -1;
         }
-        JSONArray array = getJSONArray(data);
-        if(array == null) return -1;
+        return data instanceof JSONArray ? ((JSONArray) data).length() : 1;
+    }
 
-        return array.length();
+    // An empty string is considered like a null
+    private static boolean isEmptyString(Object data) {
+        return data instanceof String && ((String) data).isEmpty();
     }
 
-    private JSONArray getJSONArray(Object data) {
-        // An empty string is considered like a null
-        if (data==null || (data instanceof String && data.toString().equals(""))) return null;
+    /**
+     * A view of the values of a JSONArray, with JSONObject.NULL seen as null.
+     * Setting an element, as Collections.sort does, copies the values first so
+     * that the parsed row is left as it was.
+     */
+    private static final class JSONArrayList extends AbstractList<Object> implements RandomAccess {
+        private final JSONArray array;
+        private List<Object> copy;
 
-        if(data instanceof JSONArray) {
-            return (JSONArray)data;
-        } else {
-            // if it's not an array, make it a one element array
-            return new JSONArray(true).put(data);
+        JSONArrayList(JSONArray array) {
+            this.array = array;
+        }
+
+        @Override
+        public Object get(int index) {
+            if (copy != null) {
+                return copy.get(index);
+            }
+            if (index < 0 || index >= array.length()) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of range [0.." + array.length() + ")");
+            }
+            Object obj = array.opt(index);
+            return JSONObject.NULL == obj ? null : obj;
+        }
+
+        @Override
+        public Object set(int index, Object element) {
+            if (copy == null) {
+                copy = new ArrayList<Object>(this);
+            }
+            return copy.set(index, element);
         }
-    }
 
+        @Override
+        public int size() {
+            return copy != null ? copy.size() : array.length();
+        }
+    }
 }
@@ -12,7 +12,6 @@
 package org.openx.data.jsonserde.objectinspector;
 
 
-import org.apache.commons.lang3.tuple.Pair;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.AbstractPrimitiveJavaObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
@@ -41,7 +40,6 @@ import org.openx.data.jsonserde.objectinspector.primitive.TypeEntryShim;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  *
@@ -49,7 +47,19 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public final class JsonObjectInspectorFactory {
 
-    static ConcurrentHashMap<Pair<TypeInfo, JsonStructOIOptions>, ObjectInspector> cachedJsonObjectInspector = new ConcurrentHashMap<>();
+    /**
+     * The system property that sets how many object inspectors are cached.
+     */
+    public static final String CACHE_SIZE_PROPERTY = "json.serde.inspector.cache.size";
+
+    static final int DEFAULT_CACHE_SIZE = 10000;
+
+    /*
+     * Caches all object inspectors, by kind, options and what they are built
+     * from.
+     */
+    static final ObjectInspectorCache cache = new ObjectInspectorCache(
+            Math.max(1, Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE)));
 
     private JsonObjectInspectorFactory() {
         throw new InstantiationError("This class must not be instantiated.");
@@ -63,11 +73,15 @@ public final class JsonObjectInspectorFactory {
      * @return
      */
     public static ObjectInspector getJsonObjectInspectorFromTypeInfo(TypeInfo typeInfo, JsonStructOIOptions options) {
-        final Pair<TypeInfo, JsonStructOIOptions> key = Pair.of(typeInfo, options);
-        ObjectInspector result = cachedJsonObjectInspector.get(key);
-        // let the factory cache the struct object inspectors since
-        // their key also has some options
-        if (result == null ||  typeInfo.getCategory() == ObjectInspector.Category.STRUCT) {
+        final ObjectInspectorCache.Key key = new ObjectInspectorCache.Key("type", options, typeInfo);
+        ObjectInspector result = cache.get(key);
+        if (result == null && options.isReuseWritables()) {
+            result = newJsonObjectInspector(typeInfo, options);
+            if (result == null) {
+                return null;
+            }
+            result = cache.putIfAbsent(key, result);
+        } else if (result == null) {
             switch (typeInfo.getCategory()) {
                 case PRIMITIVE: {
                     PrimitiveTypeInfo pti = (PrimitiveTypeInfo) typeInfo;
@@ -107,103 +121,112 @@ public final class JsonObjectInspectorFactory {
                 }
 
                 default: {
-                    result = null;
+                    return null;
                 }
             }
-            cachedJsonObjectInspector.put(key, result);
+            result = cache.putIfAbsent(key, result);
         }
         return result;
     }
 
-
-    static ConcurrentHashMap<Pair<ArrayList<Object>, JsonStructOIOptions>, JsonUnionObjectInspector> cachedJsonUnionObjectInspector
-            = new ConcurrentHashMap<>();
+    /*
+     * Builds an object inspector that shares no primitive inspector with
+     * another field, unlike the cached ones: with reused writables, two fields
+     * of the same type would otherwise hand out the same writable, and Hive
+     * would compare it with itself. The values of lists and maps are compared
+     * through one inspector, so they do not reuse writables.
+     */
+    private static ObjectInspector newJsonObjectInspector(TypeInfo typeInfo, JsonStructOIOptions options) {
+        switch (typeInfo.getCategory()) {
+            case PRIMITIVE:
+                return newPrimitiveJavaObjectInspector((PrimitiveTypeInfo) typeInfo, options);
+            case LIST:
+                return new JsonListObjectInspector(getJsonObjectInspectorFromTypeInfo(
+                        ((ListTypeInfo) typeInfo).getListElementTypeInfo(), options.withoutReuseWritables()));
+            case MAP: {
+                MapTypeInfo mapTypeInfo = (MapTypeInfo) typeInfo;
+                JsonStructOIOptions valueOptions = options.withoutReuseWritables();
+                return new JsonMapObjectInspector(
+                        getJsonObjectInspectorFromTypeInfo(mapTypeInfo.getMapKeyTypeInfo(), valueOptions),
+                        getJsonObjectInspectorFromTypeInfo(mapTypeInfo.getMapValueTypeInfo(), valueOptions));
+            }
+            case STRUCT: {
+                StructTypeInfo structTypeInfo = (StructTypeInfo) typeInfo;
+                List<TypeInfo> fieldTypeInfos = structTypeInfo.getAllStructFieldTypeInfos();
+                List<ObjectInspector> fieldObjectInspectors = new ArrayList<ObjectInspector>(fieldTypeInfos.size());
+                for (TypeInfo fieldTypeInfo : fieldTypeInfos) {
+                    fieldObjectInspectors.add(newJsonObjectInspector(fieldTypeInfo, options));
+                }
+                return new JsonStructObjectInspector(structTypeInfo.getAllStructFieldNames(),
+                        fieldObjectInspectors, options);
+            }
+            case UNION: {
+                List<ObjectInspector> ois = new LinkedList<ObjectInspector>();
+                for (TypeInfo ti : ((UnionTypeInfo) typeInfo).getAllUnionObjectTypeInfos()) {
+                    ois.add(newJsonObjectInspector(ti, options));
+                }
+                return new JsonUnionObjectInspector(ois, options);
+            }
+            default:
+                return null;
+        }
+    }
 
     public static JsonUnionObjectInspector getJsonUnionObjectInspector(
             List<ObjectInspector> ois,
             JsonStructOIOptions options) {
-        ArrayList<Object> signature = new ArrayList<Object>();
-        signature.add(ois);
-        signature.add(options);
-        final Pair<ArrayList<Object>, JsonStructOIOptions> key = Pair.of(signature, options);
-        JsonUnionObjectInspector result = cachedJsonUnionObjectInspector.get(key);
+        final ObjectInspectorCache.Key key = new ObjectInspectorCache.Key("union", options, ois.toArray());
+        JsonUnionObjectInspector result = (JsonUnionObjectInspector) cache.get(key);
         if (result == null) {
-            result = new JsonUnionObjectInspector(ois, options);
-            cachedJsonUnionObjectInspector.put(key, result);
+            result = (JsonUnionObjectInspector) cache.putIfAbsent(key, new JsonUnionObjectInspector(ois, options));
         }
         return result;
     }
 
-    /*
-     * Caches Struct Object Inspectors
-     */
-    static ConcurrentHashMap<Pair<ArrayList<Object>, JsonStructOIOptions>, JsonStructObjectInspector> cachedStandardStructObjectInspector
-            = new ConcurrentHashMap<>();
-
-
     public static JsonStructObjectInspector getJsonStructObjectInspector(
             List<String> structFieldNames,
             List<ObjectInspector> structFieldObjectInspectors,
             JsonStructOIOptions options) {
-        ArrayList<Object> signature = new ArrayList<Object>();
-        signature.add(structFieldNames);
-        signature.add(structFieldObjectInspectors);
-        signature.add(options);
-        final Pair<ArrayList<Object>, JsonStructOIOptions> key = Pair.of(signature, options);
+        Object[] signature = new Object[structFieldObjectInspectors.size() + 1];
+        signature[0] = structFieldNames;
+        for (int i = 0; i < structFieldObjectInspectors.size(); i++) {
+            signature[i + 1] = structFieldObjectInspectors.get(i);
+        }
+        final ObjectInspectorCache.Key key = new ObjectInspectorCache.Key("struct", options, signature);
 
-        JsonStructObjectInspector result = cachedStandardStructObjectInspector.get(key);
+        JsonStructObjectInspector result = (JsonStructObjectInspector) cache.get(key);
         if (result == null) {
-            result = new JsonStructObjectInspector(structFieldNames, structFieldObjectInspectors, options);
-            cachedStandardStructObjectInspector.put(key, result);
+            result = (JsonStructObjectInspector) cache.putIfAbsent(key,
+                    new JsonStructObjectInspector(structFieldNames, structFieldObjectInspectors, options));
         }
         return result;
     }
 
-    /*
-     * Caches the List object inspectors
-     */
-    static ConcurrentHashMap<Pair<ArrayList<Object>, JsonStructOIOptions>, JsonListObjectInspector> cachedJsonListObjectInspector
-            = new ConcurrentHashMap<>();
-
     public static JsonListObjectInspector getJsonListObjectInspector(
             ObjectInspector listElementObjectInspector,
             JsonStructOIOptions options) {
-        ArrayList<Object> signature = new ArrayList<Object>();
-        signature.add(listElementObjectInspector);
-        final Pair<ArrayList<Object>, JsonStructOIOptions> key = Pair.of(signature, options);
-        JsonListObjectInspector result = cachedJsonListObjectInspector.get(key);
+        final ObjectInspectorCache.Key key = new ObjectInspectorCache.Key("list", options, listElementObjectInspector);
+        JsonListObjectInspector result = (JsonListObjectInspector) cache.get(key);
         if (result == null) {
-            result = new JsonListObjectInspector(listElementObjectInspector);
-            cachedJsonListObjectInspector.put(key, result);
+            result = (JsonListObjectInspector) cache.putIfAbsent(key, new JsonListObjectInspector(listElementObjectInspector));
         }
         return result;
     }
 
-    /*
-     * Caches Map ObjectInspectors
-     */
-    static ConcurrentHashMap<Pair<ArrayList<Object>, JsonStructOIOptions>, JsonMapObjectInspector> cachedJsonMapObjectInspector
-            = new ConcurrentHashMap<>();
-
     public static JsonMapObjectInspector getJsonMapObjectInspector(
             ObjectInspector mapKeyObjectInspector,
             ObjectInspector mapValueObjectInspector,
             JsonStructOIOptions options) {
-        ArrayList<Object> signature = new ArrayList<Object>();
-        signature.add(mapKeyObjectInspector);
-        signature.add(mapValueObjectInspector);
-        final Pair<ArrayList<Object>, JsonStructOIOptions> key = Pair.of(signature, options);
-        JsonMapObjectInspector result = cachedJsonMapObjectInspector.get(key);
+        final ObjectInspectorCache.Key key = new ObjectInspectorCache.Key("map", options,
+                mapKeyObjectInspector, mapValueObjectInspector);
+        JsonMapObjectInspector result = (JsonMapObjectInspector) cache.get(key);
         if (result == null) {
-            result = new JsonMapObjectInspector(mapKeyObjectInspector, mapValueObjectInspector);
-            cachedJsonMapObjectInspector.put(key, result);
+            result = (JsonMapObjectInspector) cache.putIfAbsent(key,
+                    new JsonMapObjectInspector(mapKeyObjectInspector, mapValueObjectInspector));
         }
         return result;
     }
 
-    static final ConcurrentHashMap<Pair<PrimitiveTypeInfo, JsonStructOIOptions>, AbstractPrimitiveJavaObjectInspector> primitiveOICache
-            = new ConcurrentHashMap<>();
-
     /**
      * gets the appropriate adapter wrapper around the object inspector if
      * necessary, that is, if we're dealing with numbers. The JSON parser won't
@@ -213,38 +236,76 @@ public final class JsonObjectInspectorFactory {
      * @return
      */
     public static AbstractPrimitiveJavaObjectInspector getPrimitiveJavaObjectInspector(PrimitiveTypeInfo primitiveTypeInfo, JsonStructOIOptions options) {
-        final Pair<PrimitiveTypeInfo, JsonStructOIOptions> key = Pair.of(primitiveTypeInfo, options);
-        if (!primitiveOICache.containsKey(key)) {
-            if (primitiveTypeInfo == TypeEntryShim.booleanType) {
-                primitiveOICache.put(key, new JavaStringBooleanObjectInspector());
-            } else if (primitiveTypeInfo == TypeEntryShim.byteType) {
-                primitiveOICache.put(key, new JavaStringByteObjectInspector());
-            } else if (primitiveTypeInfo == TypeEntryShim.shortType) {
-                primitiveOICache.put(key, new JavaStringShortObjectInspector());
-            } else if (primitiveTypeInfo == TypeEntryShim.intType) {
-                primitiveOICache.put(key, new JavaStringIntObjectInspector());
-            } else if (primitiveTypeInfo == TypeEntryShim.longType) {
-                primitiveOICache.put(key, new JavaStringLongObjectInspector());
-            } else if (primitiveTypeInfo == TypeEntryShim.floatType) {
-                primitiveOICache.put(key, new JavaStringFloatObjectInspector());
-            } else if (primitiveTypeInfo == TypeEntryShim.doubleType) {
-                primitiveOICache.put(key, new JavaStringDoubleObjectInspector());
-            } else if (primitiveTypeInfo == TypeEntryShim.binaryType) {
-                primitiveOICache.put(key, new JavaStringBinaryObjectInspector());
-            } else if (primitiveTypeInfo == TypeEntryShim.dateType) {
-                primitiveOICache.put(key, new JavaStringDateObjectInspector());
-            } else if (primitiveTypeInfo == TypeEntryShim.stringType) {
-                primitiveOICache.put(key, new JsonStringJavaObjectInspector());
-            } else if (primitiveTypeInfo == TypeEntryShim.timestampType) {
-                primitiveOICache.put(key, new JavaStringTimestampObjectInspector(options.getTimestampFormats()));
-            } else if (primitiveTypeInfo instanceof DecimalTypeInfo) {
-                primitiveOICache.put(key, new JavaStringDecimalObjectInspector((DecimalTypeInfo) primitiveTypeInfo));
-            } else {
-                primitiveOICache.put(key, PrimitiveObjectInspectorFactory.getPrimitiveJavaObjectInspector(primitiveTypeInfo));
-            }
+        final ObjectInspectorCache.Key key = new ObjectInspectorCache.Key("primitive", options, primitiveTypeInfo);
+        AbstractPrimitiveJavaObjectInspector result = (AbstractPrimitiveJavaObjectInspector) cache.get(key);
+        if (result != null) {
+            return result;
         }
-        return primitiveOICache.get(key);
+        return (AbstractPrimitiveJavaObjectInspector) cache.putIfAbsent(key,
+                newPrimitiveJavaObjectInspector(primitiveTypeInfo, options));
+    }
+
+    private static AbstractPrimitiveJavaObjectInspector newPrimitiveJavaObjectInspector(
+            PrimitiveTypeInfo primitiveTypeInfo, JsonStructOIOptions options) {
+        AbstractPrimitiveJavaObjectInspector result;
+        final boolean reuse = options.isReuseWritables();
+        if (primitiveTypeInfo == TypeEntryShim.booleanType) {
+            result = new JavaStringBooleanObjectInspector(reuse);
+        } else if (primitiveTypeInfo == TypeEntryShim.byteType) {
+            result = new JavaStringByteObjectInspector(reuse);
+        } else if (primitiveTypeInfo == TypeEntryShim.shortType) {
+            result = new JavaStringShortObjectInspector(reuse);
+        } else if (primitiveTypeInfo == TypeEntryShim.intType) {
+            result = new JavaStringIntObjectInspector(reuse);
+        } else if (primitiveTypeInfo == TypeEntryShim.longType) {
+            result = new JavaStringLongObjectInspector(reuse);
+        } else if (primitiveTypeInfo == TypeEntryShim.floatType) {
+            result = new JavaStringFloatObjectInspector(reuse);
+        } else if (primitiveTypeInfo == TypeEntryShim.doubleType) {
+            result = new JavaStringDoubleObjectInspector(reuse);
+        } else if (primitiveTypeInfo == TypeEntryShim.binaryType) {
+            result = new JavaStringBinaryObjectInspector(reuse);
+        } else if (primitiveTypeInfo == TypeEntryShim.dateType) {
+            result = new JavaStringDateObjectInspector(reuse, options.getDatetimeCacheSize());
+        } else if (primitiveTypeInfo == TypeEntryShim.stringType) {
+            result = new JsonStringJavaObjectInspector(reuse);
+        } else if (primitiveTypeInfo == TypeEntryShim.timestampType) {
+            result = new JavaStringTimestampObjectInspector(options.getTimestampFormats(), reuse,
+                    options.getDatetimeCacheSize());
+        } else if (primitiveTypeInfo instanceof DecimalTypeInfo) {
+            result = new JavaStringDecimalObjectInspector((DecimalTypeInfo) primitiveTypeInfo, reuse);
+        } else {
+            result = PrimitiveObjectInspectorFactory.getPrimitiveJavaObjectInspector(primitiveTypeInfo);
+        }
+        return result;
+    }
+
+    /**
+     * Returns how many lookups found an object inspector in the cache.
+     */
+    public static long getCacheHits() {
+        return cache.getHits();
+    }
+
+    /**
+     * Returns how many lookups had to build an object inspector.
+     */
+    public static long getCacheMisses() {
+        return cache.getMisses();
     }
 
+    /**
+     * Returns how many object inspectors were evicted to keep the cache
+     * within the size set by {@link #CACHE_SIZE_PROPERTY}.
+     */
+    public static long getCacheEvictions() {
+        return cache.getEvictions();
+    }
 
+    /**
+     * Returns how many object inspectors are cached.
+     */
+    public static int getCacheSize() {
+        return cache.size();
+    }
 }
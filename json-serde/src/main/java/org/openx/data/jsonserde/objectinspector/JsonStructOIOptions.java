@@ -34,6 +34,8 @@ public  class JsonStructOIOptions {
         boolean caseInsensitive = true; // converts JSON keys to case sensitive
         boolean dotsInKeyNames = false;
         String timestampFormats;
+        boolean reuseWritables = false;
+        int datetimeCacheSize = 0;
         public Map<String, String> getMappings() {
             return mappings;
         }
@@ -53,6 +55,37 @@ public  class JsonStructOIOptions {
      public void setDotsInKeyNames(boolean dotsInKeyNames) {
          this.dotsInKeyNames = dotsInKeyNames;
      }
+     public boolean isReuseWritables() {
+         return reuseWritables;
+     }
+
+     public void setReuseWritables(boolean reuseWritables) {
+         this.reuseWritables = reuseWritables;
+     }
+
+     /**
+      * Returns these options with reuseWritables turned off.
+      */
+     public JsonStructOIOptions withoutReuseWritables() {
+         if (!reuseWritables) {
+             return this;
+         }
+         JsonStructOIOptions options = new JsonStructOIOptions(mappings);
+         options.caseInsensitive = caseInsensitive;
+         options.dotsInKeyNames = dotsInKeyNames;
+         options.timestampFormats = timestampFormats;
+         options.datetimeCacheSize = datetimeCacheSize;
+         return options;
+     }
+
+     public int getDatetimeCacheSize() {
+         return datetimeCacheSize;
+     }
+
+     public void setDatetimeCacheSize(int datetimeCacheSize) {
+         this.datetimeCacheSize = datetimeCacheSize;
+     }
+
      public void setCaseInsensitive(boolean c) { this.caseInsensitive = c; }
      public boolean isCaseInsensitive() { return this.caseInsensitive; }
 
@@ -63,8 +96,11 @@ public  class JsonStructOIOptions {
 
          JsonStructOIOptions that = (JsonStructOIOptions) o;
 
+         if (caseInsensitive != that.caseInsensitive) return false;
          if (dotsInKeyNames != that.dotsInKeyNames) return false;
-         if (timestampFormats != that.timestampFormats) return false;
+         if (reuseWritables != that.reuseWritables) return false;
+         if (datetimeCacheSize != that.datetimeCacheSize) return false;
+         if (timestampFormats != null ? !timestampFormats.equals(that.timestampFormats) : that.timestampFormats != null) return false;
          return mappings != null ? mappings.equals(that.mappings) : that.mappings == null;
 
      }
@@ -72,8 +108,11 @@ public  class JsonStructOIOptions {
      @Override
      public int hashCode() {
          int result = mappings != null ? mappings.hashCode() : 0;
+         result = 31 * result + (caseInsensitive ? 1 : 0);
          result = 31 * result + (dotsInKeyNames ? 1 : 0);
          result = 31 * result + (timestampFormats != null ? timestampFormats.hashCode() : 0);
+         result = 31 * result + (reuseWritables ? 1 : 0);
+         result = 31 * result + datetimeCacheSize;
          return result;
      }
  }
@@ -13,15 +13,25 @@ package org.openx.data.jsonserde.objectinspector;
 
 import io.starburst.openjson.JSONArray;
 import io.starburst.openjson.JSONException;
+import io.starburst.openjson.JSONKeyIndex;
 import io.starburst.openjson.JSONObject;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.StandardStructObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.StructField;
+import org.openx.data.jsonserde.objectinspector.primitive.JavaStringBinaryObjectInspector;
+import org.openx.data.jsonserde.objectinspector.primitive.JavaStringDateObjectInspector;
+import org.openx.data.jsonserde.objectinspector.primitive.JavaStringDecimalObjectInspector;
+import org.openx.data.jsonserde.objectinspector.primitive.JavaStringTimestampObjectInspector;
 import org.openx.data.jsonserde.objectinspector.primitive.JsonStringJavaObjectInspector;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * This Object Inspector is used to look into a JSonObject object.
@@ -32,6 +42,61 @@ import java.util.List;
 public class JsonStructObjectInspector extends StandardStructObjectInspector {
     JsonStructOIOptions options = null;
 
+    /*
+     * The JSON key of each field, after mappings, as written and in lower
+     * case, indexed by field ID.
+     */
+    private final String[] jsonFields;
+    private final String[] lowerJsonFields;
+
+    /*
+     * Whether a key with dots may stand for each field when dots.in.keys is
+     * set: dots are replaced with underscores, so the field name must have
+     * one.
+     */
+    private final boolean[] dottedFields;
+
+    /*
+     * The JSON keys of the fields, numbered in the order they were first
+     * seen, and the fields read from each key: several may be mapped to the
+     * same one.
+     */
+    private final JSONKeyIndex keys;
+    private final int[][] keyFields;
+
+    /*
+     * Inspectors are cached and shared by all tables with the same columns
+     * and options, and so by the threads reading them: each thread reads
+     * whole rows into its own buffers.
+     */
+    private final ThreadLocal<RowBuffers> rowBuffers = new ThreadLocal<RowBuffers>() {
+        @Override
+        protected RowBuffers initialValue() {
+            return new RowBuffers(keyFields.length, fields.size());
+        }
+    };
+
+    /*
+     * Fields whose values are parsed each time they are inspected, such as
+     * timestamps and decimals. A query can read a field several times per
+     * row, so each thread keeps what the fields of its current row were
+     * converted to.
+     */
+    private final boolean[] memoizedFields;
+
+    /*
+     * The dotted keys of the last object a dotted key was looked up in.
+     */
+    private DottedKeys dottedKeys;
+
+    /*
+     * Shape prediction: objects parsed from the same feed usually have their
+     * keys in the same order, so each field remembers the position its key
+     * was last found at, and the next object is checked there first.
+     * Each thread counts its own lookups, in its RowBuffers.
+     */
+    private final int[] shapePositions;
+
   /*  
     public JsonStructObjectInspector(List<String> structFieldNames,
             List<ObjectInspector> structFieldObjectInspectors) {
@@ -43,6 +108,36 @@ public class JsonStructObjectInspector extends StandardStructObjectInspector {
         super(structFieldNames, structFieldObjectInspectors);   
         
         options = opts;
+
+        jsonFields = new String[fields.size()];
+        lowerJsonFields = new String[fields.size()];
+        dottedFields = new boolean[fields.size()];
+        memoizedFields = new boolean[fields.size()];
+        shapePositions = new int[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            jsonFields[i] = getJsonField(fields.get(i));
+            lowerJsonFields[i] = jsonFields[i].toLowerCase(Locale.getDefault());
+            dottedFields[i] = options.dotsInKeyNames && fields.get(i).getFieldName().indexOf('_') != -1;
+            memoizedFields[i] = isParsedOnRead(fields.get(i).getFieldObjectInspector());
+            // until learned, guess that keys are in the order of the columns
+            shapePositions[i] = i;
+        }
+
+        keys = new JSONKeyIndex(options.isCaseInsensitive());
+        List<int[]> fieldsByKey = new ArrayList<int[]>();
+        for (int i = 0; i < fields.size(); i++) {
+            int id = keys.get(jsonFields[i]);
+            if (id == JSONKeyIndex.NOT_FOUND) {
+                keys.put(jsonFields[i], fieldsByKey.size());
+                fieldsByKey.add(new int[]{i});
+            } else {
+                int[] previous = fieldsByKey.get(id);
+                int[] current = Arrays.copyOf(previous, previous.length + 1);
+                current[previous.length] = i;
+                fieldsByKey.set(id, current);
+            }
+        }
+        keyFields = fieldsByKey.toArray(new int[fieldsByKey.size()][]);
     }
 
       /**
@@ -111,31 +206,53 @@ public class JsonStructObjectInspector extends StandardStructObjectInspector {
         assert fieldID >= 0 && fieldID < fields.size();
 
         Object fieldData = null;
-        
-        try {
-            if (data.has(getJsonField(fieldRef))) {
-               fieldData = data.get(getJsonField(fieldRef));
 
-            }  else if(options.dotsInKeyNames) {
+        // a field of another struct is resolved here and now
+        boolean ownField = fieldID < fields.size() && fields.get(fieldID) == fieldRef;
+        String jsonField = ownField ? jsonFields[fieldID] : getJsonField(fieldRef);
+        String lowerJsonField = ownField ? lowerJsonFields[fieldID] : jsonField.toLowerCase(Locale.getDefault());
+        boolean dotted = ownField ? dottedFields[fieldID] : options.dotsInKeyNames;
+        RowBuffers buffers = rowBuffers.get();
+        buffers.shapeLookups++;
+        try {
+            Object predicted = ownField ? data.optAt(shapePositions[fieldID], jsonField, lowerJsonField) : null;
+            if (predicted != null) {
+                buffers.shapeHits++;
+                fieldData = predicted;
+            } else if ((fieldData = data.opt(jsonField, lowerJsonField)) != null) {
+               int position = data.indexOf(jsonField);
+               if (ownField && position != -1) {
+                   shapePositions[fieldID] = position;
+               }
+            }  else if(dotted && !data.has(jsonField)) {
                 // no mappings...but there are dots in name
-                for(Iterator i = data.keys(); i.hasNext(); ) {
-                    String s  = (String) i.next(); // name in json object
-                    if (s == null) break;
-
-                    if(s.contains(".")) {
-                        // substitute . with _
-                        String name = s.replaceAll("\\.", "_");
-                        // does it match the struct field name ?
-                        if(fieldRef.getFieldName().equals(name)) {
-                            fieldData = data.get(s);
-                            break;
-                        }
-                    }
+                String key = getDottedKeys(data).get(fieldRef.getFieldName());
+                if (key != null) {
+                    fieldData = data.get(key);
                 }
             }
         } catch (JSONException ex) {
             // if key does not exist
         }
+        fieldData = toFieldData(fieldID, fieldData);
+        if (ownField && memoizedFields[fieldID] && fieldData != null) {
+            return buffers.convert(data, fieldID, fieldData,
+                    (PrimitiveObjectInspector) fields.get(fieldID).getFieldObjectInspector());
+        }
+        return fieldData;
+    }
+
+    private static boolean isParsedOnRead(ObjectInspector oi) {
+        return oi instanceof JavaStringTimestampObjectInspector
+                || oi instanceof JavaStringDateObjectInspector
+                || oi instanceof JavaStringDecimalObjectInspector
+                || oi instanceof JavaStringBinaryObjectInspector;
+    }
+
+    /**
+     * Converts the value of a JSON key to the data of the field read from it.
+     */
+    private Object toFieldData(int fieldID, Object fieldData) {
         if (fieldData == JSONObject.NULL) {
             fieldData = null;
         }
@@ -149,6 +266,60 @@ public class JsonStructObjectInspector extends StandardStructObjectInspector {
     
 
     
+    /**
+     * Returns the keys with dots of the object by the names they stand for,
+     * indexing them the first time a field of the object is missing.
+     */
+    private Map<String, String> getDottedKeys(JSONObject data) {
+        DottedKeys keys = dottedKeys;
+        if (keys == null || keys.object != data) {
+            keys = new DottedKeys(data);
+            dottedKeys = keys;
+        }
+        return keys.names;
+    }
+
+    /**
+     * The keys with dots of an object, by the names they stand for: the key
+     * with each dot replaced by an underscore. If several keys stand for the
+     * same name, the first one is kept.
+     */
+    private static final class DottedKeys {
+        final JSONObject object;
+        final Map<String, String> names = new HashMap<String, String>();
+
+        DottedKeys(JSONObject object) {
+            this.object = object;
+            for (Iterator<String> i = object.keys(); i.hasNext(); ) {
+                String s = i.next(); // name in json object
+                if (s == null) break;
+
+                if (s.indexOf('.') != -1) {
+                    String name = s.replace('.', '_');
+                    if (!names.containsKey(name)) {
+                        names.put(name, s);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns how many field values the calling thread looked up in JSON
+     * objects.
+     */
+    public long getShapeLookups() {
+        return rowBuffers.get().shapeLookups;
+    }
+
+    /**
+     * Returns how many of the lookups counted by {@link #getShapeLookups}
+     * found the key at the position predicted from the previous objects.
+     */
+    public long getShapeHits() {
+        return rowBuffers.get().shapeHits;
+    }
+
     /**
      * called to map from hive to json
      * @param fr
@@ -162,22 +333,86 @@ public class JsonStructObjectInspector extends StandardStructObjectInspector {
         }
     }
     
-    List<Object> values = new ArrayList<Object>();
     @Override
     public List<Object> getStructFieldsDataAsList(Object o) {
 	if (JsonObjectInspectorUtils.checkObject(o) == null) {
             return null;
         }
         JSONObject jObj = (JSONObject) o;
-        values.clear();
+        RowBuffers buffers = rowBuffers.get();
+        Object[] keyValues = buffers.keyValues;
+        Object[] row = buffers.row;
 
-        for (int i = 0; i < fields.size(); i++) {
-                if (jObj.has(getJsonField(fields.get(i)))){
-                    values.add(getStructFieldData(o, fields.get(i)));
-                } else {
-                    values.add(null);
+        // one pass over the members finds the value of every key
+        Arrays.fill(keyValues, null);
+        jObj.optAll(keys, keyValues);
+
+        Arrays.fill(row, null);
+        for (int id = 0; id < keyFields.length; id++) {
+            if (keyValues[id] != null) {
+                for (int fieldID : keyFields[id]) {
+                    Object fieldData = toFieldData(fieldID, keyValues[id]);
+                    if (memoizedFields[fieldID] && fieldData != null) {
+                        fieldData = buffers.convert(jObj, fieldID, fieldData,
+                                (PrimitiveObjectInspector) fields.get(fieldID).getFieldObjectInspector());
+                    }
+                    row[fieldID] = fieldData;
+                }
+            }
+        }
+        return buffers.rowList;
+    }
+
+    /**
+     * The arrays a thread reads whole rows into. The list returned for a row
+     * is overwritten by the next row the same thread reads.
+     */
+    private static final class RowBuffers {
+        final Object[] keyValues;
+        final Object[] row;
+        final List<Object> rowList;
+
+        // the field lookups of this thread, and how many found the key
+        // where the shape of the previous objects predicted
+        long shapeLookups;
+        long shapeHits;
+
+        // the row the fields were last converted for, the value of each
+        // memoized field and what it was converted to
+        Object convertedRow;
+        final Object[] rawValues;
+        final Object[] convertedValues;
+
+        RowBuffers(int keyCount, int fieldCount) {
+            keyValues = new Object[keyCount];
+            row = new Object[fieldCount];
+            rowList = Arrays.asList(row);
+            rawValues = new Object[fieldCount];
+            convertedValues = new Object[fieldCount];
+        }
+
+        /**
+         * Converts the value of a memoized field of a row, unless it was
+         * already converted for the same row. A value that can't be converted
+         * is left as it was read, to fail where it is used, as it always has.
+         */
+        Object convert(Object data, int fieldID, Object value, PrimitiveObjectInspector oi) {
+            if (convertedRow != data) {
+                Arrays.fill(rawValues, null);
+                Arrays.fill(convertedValues, null);
+                convertedRow = data;
+            }
+            if (rawValues[fieldID] != value) {
+                Object converted;
+                try {
+                    converted = oi.getPrimitiveJavaObject(value);
+                } catch (RuntimeException e) {
+                    converted = value;
                 }
+                rawValues[fieldID] = value;
+                convertedValues[fieldID] = converted;
+            }
+            return convertedValues[fieldID];
         }
-        return values;
     }
 }
@@ -6,7 +6,17 @@ import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
 import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.UnionObjectInspector;
+import org.openx.data.jsonserde.objectinspector.primitive.JavaStringBooleanObjectInspector;
+import org.openx.data.jsonserde.objectinspector.primitive.JavaStringByteObjectInspector;
+import org.openx.data.jsonserde.objectinspector.primitive.JavaStringDoubleObjectInspector;
+import org.openx.data.jsonserde.objectinspector.primitive.JavaStringFloatObjectInspector;
+import org.openx.data.jsonserde.objectinspector.primitive.JavaStringIntObjectInspector;
+import org.openx.data.jsonserde.objectinspector.primitive.JavaStringLongObjectInspector;
+import org.openx.data.jsonserde.objectinspector.primitive.JavaStringShortObjectInspector;
+import org.openx.data.jsonserde.objectinspector.primitive.JsonStringJavaObjectInspector;
+import org.openx.data.jsonserde.objectinspector.primitive.ParsePrimitiveUtils;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 /**
@@ -16,6 +26,12 @@ public class JsonUnionObjectInspector implements UnionObjectInspector {
     JsonStructOIOptions options;
     private List<ObjectInspector> ois;
 
+    /*
+     * The tag found for the last value, which Hive usually asks for again
+     * when it reads the value.
+     */
+    private LastTag lastTag;
+
 
     public JsonUnionObjectInspector(List<ObjectInspector> ois,JsonStructOIOptions opts) {
         this.ois = ois;
@@ -35,6 +51,16 @@ public class JsonUnionObjectInspector implements UnionObjectInspector {
     @Override
     public byte getTag(Object o) {
         if(o==null) return 0;
+        LastTag last = lastTag;
+        if (last != null && last.value == o) {
+            return last.tag;
+        }
+        byte tag = findTag(o);
+        lastTag = new LastTag(o, tag);
+        return tag;
+    }
+
+    private byte findTag(Object o) {
         for(byte i =0; i< ois.size(); i ++) {
             ObjectInspector oi = ois.get(i);
 
@@ -46,6 +72,10 @@ public class JsonUnionObjectInspector implements UnionObjectInspector {
 
                 case PRIMITIVE: {
                     PrimitiveObjectInspector poi = (PrimitiveObjectInspector) oi;
+                    Boolean convertible = canConvert(poi, o);
+                    if (convertible != null) {
+                        if (convertible) return i; else continue;
+                    }
                     try {
                         // try to parse it, return if able to
                         poi.getPrimitiveJavaObject(o);
@@ -58,6 +88,155 @@ public class JsonUnionObjectInspector implements UnionObjectInspector {
         throw new Error("No suitable Object Inspector found for object  " + o.toString() + " of class " + o.getClass().getCanonicalName());
     }
 
+    /**
+     * Tells whether the inspector can read the value without trying to, for
+     * the values of the usual types: numbers, strings and booleans.
+     *
+     * @return whether getPrimitiveJavaObject returns rather than throws for
+     *         the value, or null if it has to be tried to know
+     */
+    private static Boolean canConvert(PrimitiveObjectInspector poi, Object o) {
+        if (poi instanceof JsonStringJavaObjectInspector || poi instanceof JavaStringBooleanObjectInspector) {
+            return true;
+        }
+        int maxDigits;
+        if (poi instanceof JavaStringIntObjectInspector) {
+            maxDigits = 10;
+        } else if (poi instanceof JavaStringLongObjectInspector) {
+            maxDigits = 19;
+        } else if (poi instanceof JavaStringShortObjectInspector) {
+            maxDigits = 5;
+        } else if (poi instanceof JavaStringByteObjectInspector) {
+            maxDigits = 3;
+        } else if (poi instanceof JavaStringDoubleObjectInspector || poi instanceof JavaStringFloatObjectInspector) {
+            maxDigits = 0;
+        } else {
+            return null;
+        }
+        if (o instanceof Integer || o instanceof Long || o instanceof Double || o instanceof BigDecimal) {
+            return true;
+        }
+        if (o instanceof JSONObject || o instanceof JSONArray || o instanceof Boolean) {
+            return false;
+        }
+        if (!(o instanceof String)) {
+            return null;
+        }
+        String s = (String) o;
+        return maxDigits > 0 ? canParseInteger(s, maxDigits) : canParseFloatingPoint(s);
+    }
+
+    /**
+     * Follows Integer.parseInt and its siblings: an optional sign and decimal
+     * digits, within range. Hexadecimal values and values with as many digits
+     * as the largest one are left to be tried.
+     */
+    private static Boolean canParseInteger(String s, int maxDigits) {
+        if (ParsePrimitiveUtils.isHex(s)) {
+            return null;
+        }
+        int i = 0;
+        int length = s.length();
+        if (length > 0 && (s.charAt(0) == '-' || s.charAt(0) == '+')) {
+            i++;
+        }
+        if (i == length) {
+            return false;
+        }
+        while (i < length - 1 && s.charAt(i) == '0') {
+            i++;
+        }
+        int digits = length - i;
+        for (; i < length; i++) {
+            char c = s.charAt(i);
+            if (c > 127) {
+                // parseInt reads digits of other scripts too
+                return null;
+            }
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        if (digits > maxDigits) {
+            return false;
+        }
+        return digits < maxDigits ? Boolean.TRUE : null;
+    }
+
+    /**
+     * Follows Double.parseDouble: surrounding whitespace, an optional sign,
+     * then NaN, Infinity or decimal digits with an optional point, exponent
+     * and type suffix. Hexadecimal values are left to be tried.
+     */
+    private static Boolean canParseFloatingPoint(String s) {
+        s = s.trim();
+        int i = 0;
+        int length = s.length();
+        if (length > 0 && (s.charAt(0) == '-' || s.charAt(0) == '+')) {
+            i++;
+        }
+        if (i == length) {
+            return false;
+        }
+        char first = s.charAt(i);
+        if (first == 'N') {
+            return s.length() - i == 3 && s.startsWith("NaN", i);
+        }
+        if (first == 'I') {
+            return s.length() - i == 8 && s.startsWith("Infinity", i);
+        }
+        if (first == '0' && i + 1 < length && (s.charAt(i + 1) == 'x' || s.charAt(i + 1) == 'X')) {
+            return null;
+        }
+        int mantissaDigits = 0;
+        while (i < length && isDigit(s.charAt(i))) {
+            i++;
+            mantissaDigits++;
+        }
+        if (i < length && s.charAt(i) == '.') {
+            i++;
+            while (i < length && isDigit(s.charAt(i))) {
+                i++;
+                mantissaDigits++;
+            }
+        }
+        if (mantissaDigits == 0) {
+            return false;
+        }
+        if (i < length && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+                i++;
+            }
+            int exponentDigits = 0;
+            while (i < length && isDigit(s.charAt(i))) {
+                i++;
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return false;
+            }
+        }
+        if (i < length && "fFdD".indexOf(s.charAt(i)) != -1) {
+            i++;
+        }
+        return i == length;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static final class LastTag {
+        final Object value;
+        final byte tag;
+
+        LastTag(Object value, byte tag) {
+            this.value = value;
+            this.tag = tag;
+        }
+    }
+
     @Override
     public Object getField(Object o) {
         return o;
@@ -0,0 +1,159 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package org.openx.data.jsonserde.objectinspector;
+
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of object inspectors, so that tables with the same
+ * columns and options share them. Once full, the inspector used least
+ * recently is evicted; tables still holding it keep working, and the next
+ * lookup builds a new one.
+ *
+ * Inspectors are built outside of the cache, since building one looks up
+ * the inspectors of its fields: {@link #putIfAbsent} keeps the first one
+ * put for a key, and returns it to the threads that built it again.
+ */
+final class ObjectInspectorCache {
+
+    private final int maxSize;
+
+    private final LinkedHashMap<Key, ObjectInspector> inspectors;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    ObjectInspectorCache(int maxSize) {
+        this.maxSize = maxSize;
+        inspectors = new LinkedHashMap<Key, ObjectInspector>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, ObjectInspector> eldest) {
+                if (size() > ObjectInspectorCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return the cached inspector, or null if there is none.
+     */
+    synchronized ObjectInspector get(Key key) {
+        ObjectInspector inspector = inspectors.get(key);
+        if (inspector != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return inspector;
+    }
+
+    /**
+     * Caches an inspector, unless one was cached for the key in the meantime.
+     *
+     * @return the inspector cached for the key.
+     */
+    synchronized ObjectInspector putIfAbsent(Key key, ObjectInspector inspector) {
+        ObjectInspector cached = inspectors.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        inspectors.put(key, inspector);
+        return inspector;
+    }
+
+    synchronized void clear() {
+        inspectors.clear();
+    }
+
+    synchronized int size() {
+        return inspectors.size();
+    }
+
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Identifies an inspector by its kind, the options of the table and what
+     * it is built from. Inspectors it is built from are compared by identity,
+     * since the cache makes them unique; anything else is compared with
+     * equals. The hash is computed once.
+     */
+    static final class Key {
+        private final String kind;
+        private final JsonStructOIOptions options;
+        private final Object[] parts;
+        private final int hash;
+
+        Key(String kind, JsonStructOIOptions options, Object... parts) {
+            this.kind = kind;
+            this.options = options;
+            this.parts = parts;
+
+            int h = kind.hashCode();
+            h = 31 * h + (options != null ? options.hashCode() : 0);
+            for (Object part : parts) {
+                h = 31 * h + (part instanceof ObjectInspector ? System.identityHashCode(part)
+                        : part != null ? part.hashCode() : 0);
+            }
+            hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key that = (Key) o;
+            if (hash != that.hash || !kind.equals(that.kind) || parts.length != that.parts.length) return false;
+            if (options != null ? !options.equals(that.options) : that.options != null) return false;
+            for (int i = 0; i < parts.length; i++) {
+                Object part = parts[i];
+                Object other = that.parts[i];
+                if (part != other && (part == null || part instanceof ObjectInspector || !part.equals(other))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return kind + Arrays.toString(parts);
+        }
+    }
+}
@@ -15,8 +15,20 @@ public class JavaStringBinaryObjectInspector
     extends AbstractPrimitiveJavaObjectInspector
         implements SettableBinaryObjectInspector {
 
+    // the writable handed out to each thread, null unless reused
+    private final ThreadLocal<BytesWritable> writable;
+
     public JavaStringBinaryObjectInspector() {
+        this(false);
+    }
+
+    /**
+     * @param reuseWritables whether each thread is handed the same writable,
+     *                       see {@link org.openx.data.jsonserde.JsonSerDe#PROP_REUSE_WRITABLES}
+     */
+    public JavaStringBinaryObjectInspector(boolean reuseWritables) {
         super(TypeEntryShim.binaryType);
+        writable = reuseWritables ? ThreadLocal.withInitial(BytesWritable::new) : null;
     }
 
     @Override
@@ -24,15 +36,28 @@ public class JavaStringBinaryObjectInspector
         if (o == null) {
             return null;
         }
-
-        if (o instanceof String) {
-            return new BytesWritable(Base64.getDecoder().decode((String) o));
+        if (o instanceof BytesWritable) {
+            return (BytesWritable) o;
         }
-        return new BytesWritable((byte[])o);
+
+        byte[] bytes = getPrimitiveJavaObject(o);
+        if (writable == null) return new BytesWritable(bytes);
+        BytesWritable w = writable.get();
+        w.set(bytes, 0, bytes.length);
+        return w;
+    }
+
+    // with reused writables, a copy holds a writable of its own
+    @Override
+    public Object copyObject(Object o) {
+        return o == null || writable == null ? o : new BytesWritable(getPrimitiveWritableObject(o).copyBytes());
     }
 
     @Override
     public byte[] getPrimitiveJavaObject(Object o) {
+        if (o instanceof BytesWritable) {
+            return ((BytesWritable) o).copyBytes();
+        }
         if (o instanceof String) {
             return Base64.getDecoder().decode((String) o);
         }
@@ -23,22 +23,45 @@ import org.apache.hadoop.io.BooleanWritable;
 public class JavaStringBooleanObjectInspector extends AbstractPrimitiveJavaObjectInspector
   implements SettableBooleanObjectInspector {
 
+  // the writable handed out to each thread, null unless reused
+  private final ThreadLocal<BooleanWritable> writable;
+
   public JavaStringBooleanObjectInspector() {
+    this(false);
+  }
+
+  /**
+   * @param reuseWritables whether each thread is handed the same writable,
+   *                       see {@link org.openx.data.jsonserde.JsonSerDe#PROP_REUSE_WRITABLES}
+   */
+  public JavaStringBooleanObjectInspector(boolean reuseWritables) {
     super(TypeEntryShim.booleanType);
+    writable = reuseWritables ? ThreadLocal.withInitial(BooleanWritable::new) : null;
   }
 
   @Override
   public Object getPrimitiveWritableObject(Object o) {
     if(o == null) return null;
+    if (o instanceof BooleanWritable) return o;
 
-    if(o instanceof Boolean) {
-      return new BooleanWritable((Boolean) o);
-    }
-    return new BooleanWritable(Boolean.parseBoolean(o.toString()));
+    boolean value = o instanceof Boolean ? (Boolean) o : Boolean.parseBoolean(o.toString());
+    if (writable == null) return new BooleanWritable(value);
+    BooleanWritable w = writable.get();
+    w.set(value);
+    return w;
+  }
+
+  // with reused writables, a copy holds a writable of its own
+  @Override
+  public Object copyObject(Object o) {
+    return o == null || writable == null ? o : new BooleanWritable(get(o));
   }
 
   @Override
   public boolean get(Object o) {
+    if (o instanceof BooleanWritable) {
+      return ((BooleanWritable) o).get();
+    }
 
     if(o instanceof Boolean) {
       return (Boolean) o;
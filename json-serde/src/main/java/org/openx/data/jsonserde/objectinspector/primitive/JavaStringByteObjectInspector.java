@@ -27,18 +27,43 @@ public  class JavaStringByteObjectInspector
     extends AbstractPrimitiveJavaObjectInspector
         implements SettableByteObjectInspector {
 
-    public  JavaStringByteObjectInspector() {
+    // the writable handed out to each thread, null unless reused
+    private final ThreadLocal<ByteWritable> writable;
+
+    public JavaStringByteObjectInspector() {
+        this(false);
+    }
+
+    /**
+     * @param reuseWritables whether each thread is handed the same writable,
+     *                       see {@link org.openx.data.jsonserde.JsonSerDe#PROP_REUSE_WRITABLES}
+     */
+    public JavaStringByteObjectInspector(boolean reuseWritables) {
         super(TypeEntryShim.byteType);
+        writable = reuseWritables ? ThreadLocal.withInitial(ByteWritable::new) : null;
     }
     
     @Override
     public Object getPrimitiveWritableObject(Object o) {
         if(o == null) return null;
-        return new ByteWritable(get(o));
+        if (o instanceof ByteWritable) return o;
+        if (writable == null) return new ByteWritable(get(o));
+        ByteWritable w = writable.get();
+        w.set(get(o));
+        return w;
+    }
+
+    // with reused writables, a copy holds a writable of its own
+    @Override
+    public Object copyObject(Object o) {
+        return o == null || writable == null ? o : new ByteWritable(get(o));
     }
 
     @Override
     public byte get(Object o) {
+        if (o instanceof ByteWritable) {
+            return ((ByteWritable) o).get();
+        }
         if (o instanceof Integer) {
             return ((Integer) o).byteValue();
         }
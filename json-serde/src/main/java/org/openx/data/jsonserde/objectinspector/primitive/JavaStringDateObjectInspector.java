@@ -12,8 +12,34 @@ import java.sql.Date;
 public class JavaStringDateObjectInspector  extends AbstractPrimitiveJavaObjectInspector
         implements SettableDateObjectInspector {
 
+    // the writable handed out to each thread, null unless reused
+    private final ThreadLocal<DateWritableV2> writable;
+
+    // the epoch days of the dates recently parsed from strings, null unless cached
+    private final RecentValueCache<Integer> recentValues;
+
     public JavaStringDateObjectInspector() {
+        this(false);
+    }
+
+    /**
+     * @param reuseWritables whether each thread is handed the same writable,
+     *                       see {@link org.openx.data.jsonserde.JsonSerDe#PROP_REUSE_WRITABLES}
+     */
+    public JavaStringDateObjectInspector(boolean reuseWritables) {
+        this(reuseWritables, 0);
+    }
+
+    /**
+     * @param reuseWritables whether each thread is handed the same writable,
+     *                       see {@link org.openx.data.jsonserde.JsonSerDe#PROP_REUSE_WRITABLES}
+     * @param cacheSize      how many recently parsed values are kept, none if 0,
+     *                       see {@link org.openx.data.jsonserde.JsonSerDe#PROP_DATETIME_CACHE_SIZE}
+     */
+    public JavaStringDateObjectInspector(boolean reuseWritables, int cacheSize) {
         super(TypeEntryShim.dateType);
+        writable = reuseWritables ? ThreadLocal.withInitial(DateWritableV2::new) : null;
+        recentValues = cacheSize > 0 ? new RecentValueCache<>(cacheSize) : null;
     }
 
     @Override
@@ -46,23 +72,46 @@ public class JavaStringDateObjectInspector  extends AbstractPrimitiveJavaObjectI
     @Override
     public DateWritableV2 getPrimitiveWritableObject(Object o) {
         if (o == null) return null;
+        if (o instanceof DateWritableV2) return (DateWritableV2) o;
 
-        if (o instanceof String) {
-            return new DateWritableV2(org.apache.hadoop.hive.common.type.Date.valueOf((String)o));
+        if (writable == null) {
+            if (o instanceof Integer) {
+                return new DateWritableV2((Integer) o);
+            }
+            return new DateWritableV2(toDate(o));
         }
+        DateWritableV2 w = writable.get();
         if (o instanceof Integer) {
-            return new DateWritableV2((Integer) o);
+            w.set((Integer) o);
+        } else {
+            w.set(toDate(o));
+        }
+        return w;
+    }
+
+    private org.apache.hadoop.hive.common.type.Date toDate(Object o) {
+        if (o instanceof String) {
+            return parseDate((String) o);
         }
         if (o instanceof Date) {
-            return new DateWritableV2(org.apache.hadoop.hive.common.type.Date.ofEpochDay((int) ((Date) o).toLocalDate().toEpochDay()));
+            return org.apache.hadoop.hive.common.type.Date.ofEpochDay((int) ((Date) o).toLocalDate().toEpochDay());
         }
-        return new DateWritableV2((org.apache.hadoop.hive.common.type.Date) o);
+        return (org.apache.hadoop.hive.common.type.Date) o;
+    }
+
+    // with reused writables, a copy holds a writable of its own
+    @Override
+    public Object copyObject(Object o) {
+        return o == null || writable == null ? o : new DateWritableV2(getPrimitiveWritableObject(o));
     }
 
     @Override
     public org.apache.hadoop.hive.common.type.Date getPrimitiveJavaObject(Object o) {
+        if (o instanceof DateWritableV2) {
+            return org.apache.hadoop.hive.common.type.Date.ofEpochDay(((DateWritableV2) o).getDays());
+        }
         if (o instanceof String) {
-           return org.apache.hadoop.hive.common.type.Date.valueOf((String)o);
+           return parseDate((String) o);
         }
         if (o instanceof Integer) {
             return org.apache.hadoop.hive.common.type.Date.ofEpochDay((Integer) o);
@@ -72,4 +121,31 @@ public class JavaStringDateObjectInspector  extends AbstractPrimitiveJavaObjectI
         }
         return (org.apache.hadoop.hive.common.type.Date) o;
     }
-}
\ No newline at end of file
+
+    private org.apache.hadoop.hive.common.type.Date parseDate(String s) {
+        if (recentValues == null) {
+            return org.apache.hadoop.hive.common.type.Date.valueOf(s);
+        }
+        Integer epochDay = recentValues.get(s);
+        if (epochDay != null) {
+            return org.apache.hadoop.hive.common.type.Date.ofEpochDay(epochDay);
+        }
+        org.apache.hadoop.hive.common.type.Date date = org.apache.hadoop.hive.common.type.Date.valueOf(s);
+        recentValues.put(s, date.toEpochDay());
+        return date;
+    }
+
+    /**
+     * Returns how many strings were found among the recently parsed dates.
+     */
+    public long getCacheHits() {
+        return recentValues != null ? recentValues.getHits() : 0;
+    }
+
+    /**
+     * Returns how many strings had to be parsed while recent dates were cached.
+     */
+    public long getCacheMisses() {
+        return recentValues != null ? recentValues.getMisses() : 0;
+    }
+}
@@ -27,14 +27,37 @@ public class JavaStringDecimalObjectInspector
         extends AbstractPrimitiveJavaObjectInspector
         implements SettableHiveDecimalObjectInspector {
 
+    // the writable handed out to each thread, null unless reused
+    private final ThreadLocal<HiveDecimalWritable> writable;
+
     public JavaStringDecimalObjectInspector(DecimalTypeInfo typeInfo) {
+        this(typeInfo, false);
+    }
+
+    /**
+     * @param reuseWritables whether each thread is handed the same writable,
+     *                       see {@link org.openx.data.jsonserde.JsonSerDe#PROP_REUSE_WRITABLES}
+     */
+    public JavaStringDecimalObjectInspector(DecimalTypeInfo typeInfo, boolean reuseWritables) {
         super(typeInfo);
+        writable = reuseWritables ? ThreadLocal.withInitial(HiveDecimalWritable::new) : null;
     }
 
     @Override
     public HiveDecimalWritable getPrimitiveWritableObject(Object o) {
+        if (o instanceof HiveDecimalWritable) return (HiveDecimalWritable) o;
         HiveDecimal dec = get(o);
-        return dec == null ? null : new HiveDecimalWritable(dec);
+        if (dec == null) return null;
+        if (writable == null) return new HiveDecimalWritable(dec);
+        HiveDecimalWritable w = writable.get();
+        w.set(dec);
+        return w;
+    }
+
+    // with reused writables, a copy holds a writable of its own
+    @Override
+    public Object copyObject(Object o) {
+        return o == null || writable == null ? o : new HiveDecimalWritable(getPrimitiveWritableObject(o));
     }
 
     private HiveDecimal get(Object o) {
@@ -46,6 +69,12 @@ public class JavaStringDecimalObjectInspector
     }
 
     private HiveDecimal getHiveDecimal(Object o) {
+        if (o instanceof HiveDecimal) {
+            return (HiveDecimal) o;
+        }
+        if (o instanceof HiveDecimalWritable) {
+            return ((HiveDecimalWritable) o).getHiveDecimal();
+        }
         if (o instanceof Integer) {
             return HiveDecimal.create((Integer) o);
         }
@@ -25,18 +25,43 @@ import java.math.BigDecimal;
 public class JavaStringDoubleObjectInspector extends AbstractPrimitiveJavaObjectInspector
         implements SettableDoubleObjectInspector {
 
+    // the writable handed out to each thread, null unless reused
+    private final ThreadLocal<DoubleWritable> writable;
+
     public JavaStringDoubleObjectInspector() {
+        this(false);
+    }
+
+    /**
+     * @param reuseWritables whether each thread is handed the same writable,
+     *                       see {@link org.openx.data.jsonserde.JsonSerDe#PROP_REUSE_WRITABLES}
+     */
+    public JavaStringDoubleObjectInspector(boolean reuseWritables) {
         super(TypeEntryShim.doubleType);
+        writable = reuseWritables ? ThreadLocal.withInitial(DoubleWritable::new) : null;
     }
 
     @Override
     public Object getPrimitiveWritableObject(Object o) {
         if(o == null) return null;
-        return new DoubleWritable(get(o));
+        if (o instanceof DoubleWritable) return o;
+        if (writable == null) return new DoubleWritable(get(o));
+        DoubleWritable w = writable.get();
+        w.set(get(o));
+        return w;
+    }
+
+    // with reused writables, a copy holds a writable of its own
+    @Override
+    public Object copyObject(Object o) {
+        return o == null || writable == null ? o : new DoubleWritable(get(o));
     }
 
     @Override
     public double get(Object o) {
+        if (o instanceof DoubleWritable) {
+            return ((DoubleWritable) o).get();
+        }
         if (o instanceof Integer) {
             return ((Integer) o).doubleValue();
         }
@@ -25,18 +25,43 @@ import java.math.BigDecimal;
 public class JavaStringFloatObjectInspector extends AbstractPrimitiveJavaObjectInspector
         implements SettableFloatObjectInspector {
 
+    // the writable handed out to each thread, null unless reused
+    private final ThreadLocal<FloatWritable> writable;
+
     public JavaStringFloatObjectInspector() {
+        this(false);
+    }
+
+    /**
+     * @param reuseWritables whether each thread is handed the same writable,
+     *                       see {@link org.openx.data.jsonserde.JsonSerDe#PROP_REUSE_WRITABLES}
+     */
+    public JavaStringFloatObjectInspector(boolean reuseWritables) {
         super(TypeEntryShim.floatType);
+        writable = reuseWritables ? ThreadLocal.withInitial(FloatWritable::new) : null;
     }
 
     @Override
     public Object getPrimitiveWritableObject(Object o) {
         if(o == null) return null;
-        return new FloatWritable(get(o));
+        if (o instanceof FloatWritable) return o;
+        if (writable == null) return new FloatWritable(get(o));
+        FloatWritable w = writable.get();
+        w.set(get(o));
+        return w;
+    }
+
+    // with reused writables, a copy holds a writable of its own
+    @Override
+    public Object copyObject(Object o) {
+        return o == null || writable == null ? o : new FloatWritable(get(o));
     }
 
     @Override
     public float get(Object o) {
+        if (o instanceof FloatWritable) {
+            return ((FloatWritable) o).get();
+        }
         if (o instanceof Integer) {
             return ((Integer) o).floatValue();
         }
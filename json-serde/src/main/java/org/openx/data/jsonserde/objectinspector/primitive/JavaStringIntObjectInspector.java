@@ -26,18 +26,43 @@ public class JavaStringIntObjectInspector
     extends AbstractPrimitiveJavaObjectInspector
         implements SettableIntObjectInspector {
 
+    // the writable handed out to each thread, null unless reused
+    private final ThreadLocal<IntWritable> writable;
+
     public JavaStringIntObjectInspector() {
+        this(false);
+    }
+
+    /**
+     * @param reuseWritables whether each thread is handed the same writable,
+     *                       see {@link org.openx.data.jsonserde.JsonSerDe#PROP_REUSE_WRITABLES}
+     */
+    public JavaStringIntObjectInspector(boolean reuseWritables) {
         super(TypeEntryShim.intType);
+        writable = reuseWritables ? ThreadLocal.withInitial(IntWritable::new) : null;
     }
 
     @Override
     public Object getPrimitiveWritableObject(Object o) {
         if(o == null) return null;
-        return new IntWritable(get(o));
+        if (o instanceof IntWritable) return o;
+        if (writable == null) return new IntWritable(get(o));
+        IntWritable w = writable.get();
+        w.set(get(o));
+        return w;
+    }
+
+    // with reused writables, a copy holds a writable of its own
+    @Override
+    public Object copyObject(Object o) {
+        return o == null || writable == null ? o : new IntWritable(get(o));
     }
 
     @Override
     public int get(Object o) {
+        if (o instanceof IntWritable) {
+            return ((IntWritable) o).get();
+        }
         if (o instanceof Integer) {
             return (Integer) o;
         }
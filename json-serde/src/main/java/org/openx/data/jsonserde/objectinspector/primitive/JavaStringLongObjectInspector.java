@@ -26,18 +26,43 @@ public class JavaStringLongObjectInspector
         extends AbstractPrimitiveJavaObjectInspector
         implements SettableLongObjectInspector {
 
+    // the writable handed out to each thread, null unless reused
+    private final ThreadLocal<LongWritable> writable;
+
     public JavaStringLongObjectInspector() {
+        this(false);
+    }
+
+    /**
+     * @param reuseWritables whether each thread is handed the same writable,
+     *                       see {@link org.openx.data.jsonserde.JsonSerDe#PROP_REUSE_WRITABLES}
+     */
+    public JavaStringLongObjectInspector(boolean reuseWritables) {
         super(TypeEntryShim.longType);
+        writable = reuseWritables ? ThreadLocal.withInitial(LongWritable::new) : null;
     }
 
     @Override
     public Object getPrimitiveWritableObject(Object o) {
         if(o == null) return null;
-        return new LongWritable(get(o));
+        if (o instanceof LongWritable) return o;
+        if (writable == null) return new LongWritable(get(o));
+        LongWritable w = writable.get();
+        w.set(get(o));
+        return w;
+    }
+
+    // with reused writables, a copy holds a writable of its own
+    @Override
+    public Object copyObject(Object o) {
+        return o == null || writable == null ? o : new LongWritable(get(o));
     }
 
     @Override
     public long get(Object o) {
+        if (o instanceof LongWritable) {
+            return ((LongWritable) o).get();
+        }
         if (o instanceof Integer) {
             return ((Integer) o).longValue();
         }
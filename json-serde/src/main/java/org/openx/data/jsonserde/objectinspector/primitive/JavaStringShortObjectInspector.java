@@ -28,18 +28,43 @@ public class JavaStringShortObjectInspector
         extends AbstractPrimitiveJavaObjectInspector
         implements SettableShortObjectInspector {
 
+    // the writable handed out to each thread, null unless reused
+    private final ThreadLocal<ShortWritable> writable;
+
     public JavaStringShortObjectInspector() {
+        this(false);
+    }
+
+    /**
+     * @param reuseWritables whether each thread is handed the same writable,
+     *                       see {@link org.openx.data.jsonserde.JsonSerDe#PROP_REUSE_WRITABLES}
+     */
+    public JavaStringShortObjectInspector(boolean reuseWritables) {
         super(TypeEntryShim.shortType);
+        writable = reuseWritables ? ThreadLocal.withInitial(ShortWritable::new) : null;
     }
 
     @Override
     public Object getPrimitiveWritableObject(Object o) {
         if(o == null) return null;
-        return new ShortWritable(get(o));
+        if (o instanceof ShortWritable) return o;
+        if (writable == null) return new ShortWritable(get(o));
+        ShortWritable w = writable.get();
+        w.set(get(o));
+        return w;
+    }
+
+    // with reused writables, a copy holds a writable of its own
+    @Override
+    public Object copyObject(Object o) {
+        return o == null || writable == null ? o : new ShortWritable(get(o));
     }
 
     @Override
     public short get(Object o) {
+        if (o instanceof ShortWritable) {
+            return ((ShortWritable) o).get();
+        }
         if (o instanceof Integer) {
             return ((Integer) o).shortValue();
         }
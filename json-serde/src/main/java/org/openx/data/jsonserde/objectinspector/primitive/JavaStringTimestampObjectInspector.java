@@ -17,6 +17,7 @@ import org.apache.hadoop.hive.serde2.objectinspector.primitive.AbstractPrimitive
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.SettableTimestampObjectInspector;
 
 import java.sql.Timestamp;
+import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
@@ -33,9 +34,39 @@ public class JavaStringTimestampObjectInspector extends AbstractPrimitiveJavaObj
 
     private List<DateTimeFormatter> timestampFormatters;
 
+    // the instants of the timestamps recently parsed from strings, null unless cached
+    private final RecentValueCache<Instant> recentValues;
+
+    // how many values each formatter parsed, approximate when shared by threads
+    private final long[] timestampFormatHits;
+
+    // the writable handed out to each thread, null unless reused
+    private final ThreadLocal<TimestampWritableV2> writable;
+
     public JavaStringTimestampObjectInspector(String timestampFormats) {
+        this(timestampFormats, false);
+    }
+
+    /**
+     * @param reuseWritables whether each thread is handed the same writable,
+     *                       see {@link org.openx.data.jsonserde.JsonSerDe#PROP_REUSE_WRITABLES}
+     */
+    public JavaStringTimestampObjectInspector(String timestampFormats, boolean reuseWritables) {
+        this(timestampFormats, reuseWritables, 0);
+    }
+
+    /**
+     * @param reuseWritables whether each thread is handed the same writable,
+     *                       see {@link org.openx.data.jsonserde.JsonSerDe#PROP_REUSE_WRITABLES}
+     * @param cacheSize      how many recently parsed values are kept, none if 0,
+     *                       see {@link org.openx.data.jsonserde.JsonSerDe#PROP_DATETIME_CACHE_SIZE}
+     */
+    public JavaStringTimestampObjectInspector(String timestampFormats, boolean reuseWritables, int cacheSize) {
         super(TypeEntryShim.timestampType);
         this.timestampFormatters = generateFormatters(timestampFormats);
+        this.timestampFormatHits = new long[timestampFormatters == null ? 0 : timestampFormatters.size()];
+        writable = reuseWritables ? ThreadLocal.withInitial(TimestampWritableV2::new) : null;
+        recentValues = cacheSize > 0 ? new RecentValueCache<>(cacheSize) : null;
     }
 
     private static List<DateTimeFormatter> generateFormatters(String timestampFormats) {
@@ -89,23 +120,74 @@ public class JavaStringTimestampObjectInspector extends AbstractPrimitiveJavaObj
     public TimestampWritableV2 getPrimitiveWritableObject(Object o) {
         if(o == null) return null;
         
+        org.apache.hadoop.hive.common.type.Timestamp timestamp;
         if (o instanceof String) {
-           return new TimestampWritableV2(org.apache.hadoop.hive.common.type.Timestamp.valueOf((String)o));
-        }
-        if (o instanceof org.apache.hadoop.hive.common.type.Timestamp) {
-          return new TimestampWritableV2((org.apache.hadoop.hive.common.type.Timestamp) o);
+           timestamp = org.apache.hadoop.hive.common.type.Timestamp.valueOf((String)o);
+        } else if (o instanceof org.apache.hadoop.hive.common.type.Timestamp) {
+          timestamp = (org.apache.hadoop.hive.common.type.Timestamp) o;
+        } else {
+          return (TimestampWritableV2) o;
         }
-        return (TimestampWritableV2) o;
+        if (writable == null) return new TimestampWritableV2(timestamp);
+        TimestampWritableV2 w = writable.get();
+        w.set(timestamp);
+        return w;
+    }
+
+    // with reused writables, a copy holds a writable of its own
+    @Override
+    public Object copyObject(Object o) {
+        return o == null || writable == null ? o : new TimestampWritableV2(getPrimitiveWritableObject(o));
     }
 
     @Override
     public org.apache.hadoop.hive.common.type.Timestamp getPrimitiveJavaObject(Object o) {
+        if (o instanceof TimestampWritableV2) {
+            TimestampWritableV2 w = (TimestampWritableV2) o;
+            return org.apache.hadoop.hive.common.type.Timestamp.ofEpochSecond(w.getSeconds(), w.getNanos());
+        }
         if(o instanceof String) {
-            return ParsePrimitiveUtils.parseTimestamp((String) o, timestampFormatters);
+            return parseTimestamp((String) o);
         } else if(o instanceof Number) {
-            return ParsePrimitiveUtils.parseTimestamp(o.toString(), timestampFormatters);
+            return ParsePrimitiveUtils.parseTimestamp(o.toString(), timestampFormatters, timestampFormatHits);
         } else {
            return (org.apache.hadoop.hive.common.type.Timestamp) o;
         }
     }
+
+    private org.apache.hadoop.hive.common.type.Timestamp parseTimestamp(String s) {
+        if (recentValues == null) {
+            return ParsePrimitiveUtils.parseTimestamp(s, timestampFormatters, timestampFormatHits);
+        }
+        Instant instant = recentValues.get(s);
+        if (instant != null) {
+            return org.apache.hadoop.hive.common.type.Timestamp.ofEpochSecond(instant.getEpochSecond(), instant.getNano());
+        }
+        org.apache.hadoop.hive.common.type.Timestamp timestamp =
+                ParsePrimitiveUtils.parseTimestamp(s, timestampFormatters, timestampFormatHits);
+        recentValues.put(s, Instant.ofEpochSecond(timestamp.toEpochSecond(), timestamp.getNanos()));
+        return timestamp;
+    }
+
+    /**
+     * Returns how many strings were found among the recently parsed timestamps.
+     */
+    public long getCacheHits() {
+        return recentValues != null ? recentValues.getHits() : 0;
+    }
+
+    /**
+     * Returns how many strings had to be parsed while recent timestamps were cached.
+     */
+    public long getCacheMisses() {
+        return recentValues != null ? recentValues.getMisses() : 0;
+    }
+
+    /**
+     * Returns how many values were parsed with each of the timestamp.formats,
+     * in the order they are listed; empty if the table has none.
+     */
+    public long[] getTimestampFormatHits() {
+        return timestampFormatHits.clone();
+    }
 }
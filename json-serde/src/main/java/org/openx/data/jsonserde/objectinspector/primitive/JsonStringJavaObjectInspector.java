@@ -24,13 +24,36 @@ import org.apache.hadoop.io.Text;
 public class JsonStringJavaObjectInspector extends AbstractPrimitiveJavaObjectInspector
         implements SettableStringObjectInspector {
 
+  // the writable handed out to each thread, null unless reused
+  private final ThreadLocal<Text> writable;
+
   public JsonStringJavaObjectInspector() {
+    this(false);
+  }
+
+  /**
+   * @param reuseWritables whether each thread is handed the same writable,
+   *                       see {@link org.openx.data.jsonserde.JsonSerDe#PROP_REUSE_WRITABLES}
+   */
+  public JsonStringJavaObjectInspector(boolean reuseWritables) {
     super(TypeEntryShim.stringType);
+    writable = reuseWritables ? ThreadLocal.withInitial(Text::new) : null;
   }
 
   @Override
   public Text getPrimitiveWritableObject(Object o) {
-    return o == null ? null : new Text(o.toString());
+    if (o == null) return null;
+    if (o instanceof Text) return (Text) o;
+    if (writable == null) return new Text(o.toString());
+    Text w = writable.get();
+    w.set(o.toString());
+    return w;
+  }
+
+  // with reused writables, a copy holds a writable of its own
+  @Override
+  public Object copyObject(Object o) {
+    return o == null || writable == null ? o : new Text(o.toString());
   }
 
   @Override
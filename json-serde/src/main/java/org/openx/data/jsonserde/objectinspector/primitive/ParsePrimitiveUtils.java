@@ -6,6 +6,7 @@
 package org.openx.data.jsonserde.objectinspector.primitive;
 
 import java.sql.Timestamp;
+import java.text.ParsePosition;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
@@ -108,9 +109,28 @@ public final class ParsePrimitiveUtils {
     }
 
     public static org.apache.hadoop.hive.common.type.Timestamp parseTimestamp(String s, List<DateTimeFormatter> timestampFormaters) {
+        return parseTimestamp(s, timestampFormaters, null);
+    }
+
+    /**
+     * Parses a timestamp with the first of the formatters that can parse it,
+     * or as a date and time or epoch time if there are no formatters.
+     * Formatters that don't match cost no exception; only a value that no
+     * formatter matches throws one.
+     *
+     * @param s
+     * @param timestampFormaters
+     * @param formatHits counts the values parsed with each formatter, or null
+     * @return
+     */
+    public static org.apache.hadoop.hive.common.type.Timestamp parseTimestamp(String s, List<DateTimeFormatter> timestampFormaters,
+                                                                               long[] formatHits) {
         if (timestampFormaters == null) {
             final String sampleUnixTimestampInMs = "1454612111000";
-            org.apache.hadoop.hive.common.type.Timestamp value;
+            org.apache.hadoop.hive.common.type.Timestamp value = parseIsoTimestamp(s);
+            if (value != null) {
+                return value;
+            }
             if (s.indexOf(':') > 0) {
                 value = org.apache.hadoop.hive.common.type.Timestamp.valueOf(nonUTCFormat(s));
             } else if (s.indexOf('.') >= 0) {
@@ -130,10 +150,25 @@ public final class ParsePrimitiveUtils {
             return value;
         } else {
             DateTimeParseException lastException = null;
-            for (DateTimeFormatter formatter : timestampFormaters) {
+            ParsePosition position = new ParsePosition(0);
+            for (int i = 0; i < timestampFormaters.size(); i++) {
+                position.setIndex(0);
+                position.setErrorIndex(-1);
+                // parses and resolves in one pass, returning null rather than throwing
+                ZonedDateTime zonedDateTime = (ZonedDateTime) timestampFormaters.get(i)
+                        .toFormat(ZonedDateTime::from).parseObject(s, position);
+                if (zonedDateTime == null || position.getIndex() != s.length()) {
+                    continue;
+                }
+                if (formatHits != null) {
+                    formatHits[i]++;
+                }
+                return org.apache.hadoop.hive.common.type.Timestamp.ofEpochSecond(zonedDateTime.toEpochSecond(), zonedDateTime.getNano());
+            }
+            if (!timestampFormaters.isEmpty()) {
+                // fails with the error the last formatter reports
                 try {
-                    ZonedDateTime zonedDateTime = formatter.parse(s, ZonedDateTime::from);
-                    return org.apache.hadoop.hive.common.type.Timestamp.ofEpochSecond(zonedDateTime.toEpochSecond(), zonedDateTime.getNano());
+                    timestampFormaters.get(timestampFormaters.size() - 1).parse(s, ZonedDateTime::from);
                 } catch (DateTimeParseException ex) {
                     lastException = ex;
                 }
@@ -142,6 +177,132 @@ public final class ParsePrimitiveUtils {
         }
     }
 
+    /**
+     * Parses the usual shapes of timestamps straight into their epoch seconds
+     * and nanos: yyyy-MM-dd HH:mm:ss[.fffffffff], and the same with a T
+     * between date and time, optionally followed by Z or an offset such as
+     * +01:00 or -0600. Returns null for anything else, including values that
+     * are out of range, so that they are parsed the usual way and read as
+     * they always have.
+     *
+     * @param s
+     * @return the timestamp, in UTC if it has an offset, or null
+     */
+    static org.apache.hadoop.hive.common.type.Timestamp parseIsoTimestamp(String s) {
+        int length = s.length();
+        if (length < 19 || s.charAt(4) != '-' || s.charAt(7) != '-'
+                || s.charAt(13) != ':' || s.charAt(16) != ':') {
+            return null;
+        }
+        char separator = s.charAt(10);
+        if (separator != ' ' && separator != 'T') {
+            return null;
+        }
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 2);
+        int day = digits(s, 8, 2);
+        int hour = digits(s, 11, 2);
+        int minute = digits(s, 14, 2);
+        int second = digits(s, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return null;
+        }
+
+        int pos = 19;
+        int nanos = 0;
+        if (pos < length && s.charAt(pos) == '.') {
+            int start = ++pos;
+            while (pos < length && pos - start < 9 && isDigit(s.charAt(pos))) {
+                nanos = nanos * 10 + (s.charAt(pos++) - '0');
+            }
+            if (pos == start) {
+                return null;
+            }
+            for (int i = pos - start; i < 9; i++) {
+                nanos *= 10;
+            }
+        }
+
+        int offsetSeconds = 0;
+        if (pos < length) {
+            // offsets are only read with a T, like ISO_OFFSET_DATE_TIME does
+            if (separator != 'T') {
+                return null;
+            }
+            char sign = s.charAt(pos);
+            if (sign == 'Z' && pos + 1 == length) {
+                offsetSeconds = 0;
+            } else if (sign == '+' || sign == '-') {
+                int offsetHours = digits(s, pos + 1, 2);
+                int offsetMinutes;
+                if (length == pos + 6 && s.charAt(pos + 3) == ':') {
+                    offsetMinutes = digits(s, pos + 4, 2);
+                } else if (length == pos + 5) {
+                    offsetMinutes = digits(s, pos + 3, 2);
+                } else {
+                    return null;
+                }
+                if (offsetHours < 0 || offsetHours > 17 || offsetMinutes < 0 || offsetMinutes > 59) {
+                    return null;
+                }
+                offsetSeconds = (offsetHours * 60 + offsetMinutes) * 60;
+                if (sign == '-') {
+                    offsetSeconds = -offsetSeconds;
+                }
+            } else {
+                return null;
+            }
+        }
+
+        long epochSecond = epochDay(year, month, day) * 86400L
+                + hour * 3600 + minute * 60 + second - offsetSeconds;
+        return org.apache.hadoop.hive.common.type.Timestamp.ofEpochSecond(epochSecond, nanos);
+    }
+
+    /**
+     * @return the number written with the given count of digits at the
+     *         offset, or -1 if they are not all digits.
+     */
+    private static int digits(String s, int offset, int count) {
+        if (offset + count > s.length()) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = s.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+        }
+        return (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+    }
+
+    /**
+     * Days from 1970-01-01 to the date in the proleptic Gregorian calendar,
+     * as LocalDate.toEpochDay computes them.
+     */
+    private static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
     /**
      * Timestamp.parse gets an absolute time, without the timezone.
      * This function translates to the right string format that Timestamp
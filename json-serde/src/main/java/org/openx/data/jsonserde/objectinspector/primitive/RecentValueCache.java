@@ -0,0 +1,91 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+
+package org.openx.data.jsonserde.objectinspector.primitive;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A small cache of the values recently parsed from strings, for columns
+ * whose values repeat from row to row, such as the timestamps of events
+ * logged in the same second or the date of a partition.
+ *
+ * The cache is direct mapped: each string has a single slot, picked by its
+ * hash, and a string parsed into a slot replaces the one parsed there
+ * before. Slots hold immutable entries, so threads share the cache without
+ * locking; a thread may miss a value another one just parsed, and parse it
+ * again. Since the values are handed to every row and thread that parses
+ * the same string, they must be immutable, such as epoch days rather than
+ * the Hive dates built from them.
+ */
+final class RecentValueCache<V> {
+
+    private static final class Entry<V> {
+        final String key;
+        final V value;
+
+        Entry(String key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private final Entry<V>[] entries;
+    private final int mask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param size how many values are kept, rounded up to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    RecentValueCache(int size) {
+        int capacity = size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+        entries = (Entry<V>[]) new Entry<?>[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return the value parsed from the string, or null if it isn't cached
+     */
+    V get(String key) {
+        Entry<V> entry = entries[slot(key)];
+        if (entry != null && entry.key.equals(key)) {
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        return null;
+    }
+
+    void put(String key, V value) {
+        entries[slot(key)] = new Entry<V>(key, value);
+    }
+
+    private int slot(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    int size() {
+        return entries.length;
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+}
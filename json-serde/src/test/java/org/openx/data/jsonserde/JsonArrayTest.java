@@ -25,9 +25,13 @@ import org.apache.hadoop.io.Writable;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 /**
  * @author rcongiu
@@ -104,4 +108,44 @@ public class JsonArrayTest {
     }
 
 
+    @Test
+    public void testListViews() throws Exception {
+        JSONObject result = (JSONObject) instance.deserialize(
+                new Text("{\"languages\":[\"Italian\",null,\"German\"],\"religions\":\"Catholic\"}"));
+        StructObjectInspector soi = (StructObjectInspector) instance.getObjectInspector();
+
+        StructField languages = soi.getStructFieldRef("languages");
+        ListObjectInspector loi = (ListObjectInspector) languages.getFieldObjectInspector();
+        Object val = soi.getStructFieldData(result, languages);
+        assertEquals(Arrays.asList("Italian", null, "German"), loi.getList(val));
+        assertEquals(3, loi.getListLength(val));
+        assertNull(loi.getListElement(val, 1));
+        assertNull(loi.getListElement(val, 3));
+
+        // a scalar is read as a one element array
+        StructField religions = soi.getStructFieldRef("religions");
+        val = soi.getStructFieldData(result, religions);
+        assertEquals(Collections.singletonList("Catholic"), loi.getList(val));
+        assertEquals(1, loi.getListLength(val));
+        assertEquals("Catholic", loi.getListElement(val, 0));
+        assertNull(loi.getListElement(val, 1));
+    }
+
+    @Test
+    public void testSortList() throws Exception {
+        JSONObject result = (JSONObject) instance.deserialize(
+                new Text("{\"languages\":[\"Italian\",\"German\",\"English\"]}"));
+        StructObjectInspector soi = (StructObjectInspector) instance.getObjectInspector();
+        StructField languages = soi.getStructFieldRef("languages");
+        ListObjectInspector loi = (ListObjectInspector) languages.getFieldObjectInspector();
+        Object val = soi.getStructFieldData(result, languages);
+
+        // as sort_array does
+        List<String> list = (List<String>) loi.getList(val);
+        Collections.sort(list);
+        assertEquals(Arrays.asList("English", "German", "Italian"), list);
+        // the row itself is unchanged
+        assertEquals("Italian", loi.getListElement(val, 0));
+    }
+
 }
@@ -26,6 +26,8 @@ import org.apache.hadoop.io.Writable;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 import static org.junit.Assert.assertEquals;
@@ -110,4 +112,39 @@ public class JsonMapTest {
   }
 
 
+  @Test
+  public void testGetMapIsAView() throws Exception {
+    Writable w = new Text("{\"religions\": { \"f\": \"v\", \"n\":null, \"g\": \"w\"} }");
+    JSONObject result = (JSONObject) instance.deserialize(w);
+    StructObjectInspector soi = (StructObjectInspector) instance.getObjectInspector();
+    StructField sfr = soi.getStructFieldRef("religions");
+    MapObjectInspector moi = (MapObjectInspector) sfr.getFieldObjectInspector();
+    Object val = soi.getStructFieldData(result, sfr);
+
+    Map<?, ?> map = moi.getMap(val);
+    assertEquals(3, map.size());
+    assertEquals("v", map.get("f"));
+    assertNull(map.get("n"));
+    assertTrue(map.containsKey("n"));
+    assertTrue(!map.containsKey("x"));
+    assertTrue(map.containsValue(null));
+    Map<Object, Object> expected = new HashMap<Object, Object>();
+    expected.put("f", "v");
+    expected.put("n", null);
+    expected.put("g", "w");
+    assertEquals(expected, new HashMap<Object, Object>(map));
+
+    // changes go to a copy, not to the row
+    @SuppressWarnings("unchecked")
+    Map<Object, Object> changed = (Map<Object, Object>) map;
+    changed.remove("f");
+    changed.put("h", "x");
+    assertEquals(3, map.size());
+    assertEquals("x", map.get("h"));
+    assertNull(map.get("f"));
+    assertEquals("v", moi.getMapValueElement(val, "f"));
+    assertEquals(3, moi.getMapSize(val));
+  }
+
+
 }
@@ -0,0 +1,177 @@
+package org.openx.data.jsonserde;
+
+import io.starburst.openjson.JSONObject;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.common.type.HiveDecimal;
+import org.apache.hadoop.hive.serde.serdeConstants;
+import org.apache.hadoop.hive.serde2.ColumnProjectionUtils;
+import org.apache.hadoop.hive.serde2.SerDeException;
+import org.apache.hadoop.hive.serde2.io.HiveDecimalWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that rows parsed by the compiled parser read the same as rows
+ * parsed into JSONObjects.
+ */
+public class JsonSerDeCompiledParsingTest {
+
+    static final String COLUMNS = "i,l,s,t,d,f,b,name,ts,tags,attrs,pos,dec,raw,alias";
+    static final String TYPES = "int,bigint,smallint,tinyint,double,float,boolean,string,timestamp,"
+            + "array<string>,map<string,int>,struct<lat:double,lon:double>,decimal(10,2),string,string";
+
+    static final String[] ROWS = {
+            "{\"i\":1,\"l\":9223372036854775807,\"s\":-2,\"t\":3,\"d\":1.5,\"f\":2.25,\"b\":true,\"name\":\"one\","
+                    + "\"ts\":\"2016-01-02 03:04:05\",\"tags\":[\"a\",\"b\"],\"attrs\":{\"x\":1},"
+                    + "\"pos\":{\"lat\":1.5,\"lon\":-2.25},\"dec\":12.345,\"raw\":{\"k\":[1,2]}}",
+            // numbers in strings, strings of numbers and values that need narrowing
+            "{\"i\":\"2\",\"l\":-0,\"s\":70000,\"t\":-129,\"d\":\"3.5\",\"f\":1e-3,\"b\":\"TRUE\",\"name\":42,"
+                    + "\"ts\":1454382245,\"raw\":[1,{\"a\":null}],\"alias\":1.0}",
+            "{\"i\":2147483648,\"l\":1e3,\"d\":-0,\"f\":3,\"b\":false,\"name\":null,\"ts\":null,\"dec\":\"7\"}",
+            "{\"i\":12345678901234567890,\"d\":12345678901234567890,\"f\":0.1,\"l\":1.9,\"s\":0x1F,\"t\":017}",
+            "{\"d\":1e999,\"f\":1e999,\"i\":-1.5e2,\"name\":true,\"b\":1}",
+            // case insensitive, duplicate, unknown and mapped keys
+            "{\"I\":1,\"NAME\":\"first\",\"unknown\":{\"i\":5,\"x\":[1,2,{}]},\"name\":\"second\",\"i\":7,"
+                    + "\"other\":\"x\"}",
+            // lenient syntax
+            "{i:4,'name'='four';\"tags\":[\"c\",,] /* comment */}",
+            " \t{}",
+            "[5,6,7,8,9.5,10.5,true,\"five\",\"2016-01-01 00:00:00\",[\"e\"],{\"z\":26},{\"lat\":0,\"lon\":0},"
+                    + "1.25,\"r\",\"s\"]",
+            "[1,2]",
+            "[]",
+            "not json",
+            "",
+    };
+
+    private JsonSerDe serDe(boolean compiled, Configuration conf) throws SerDeException {
+        Properties tbl = new Properties();
+        tbl.setProperty(serdeConstants.LIST_COLUMNS, COLUMNS);
+        tbl.setProperty(serdeConstants.LIST_COLUMN_TYPES, TYPES);
+        tbl.setProperty("mapping.alias", "name");
+        tbl.setProperty(JsonSerDe.PROP_COMPILED_PARSING, String.valueOf(compiled));
+        tbl.setProperty(JsonSerDe.PROP_PROJECTION_PUSHDOWN, String.valueOf(conf != null));
+
+        JsonSerDe instance = new JsonSerDe();
+        instance.initialize(conf, tbl);
+        return instance;
+    }
+
+    @Test
+    public void testSameAsJsonObjects() throws Exception {
+        JsonSerDe eager = serDe(false, null);
+        JsonSerDe compiled = serDe(true, null);
+        Text text = new Text();
+
+        for (String row : ROWS) {
+            text.set(row);
+            Object expected = ObjectInspectorUtils.copyToStandardJavaObject(
+                    eager.deserialize(text), eager.getObjectInspector());
+            Object actual = ObjectInspectorUtils.copyToStandardJavaObject(
+                    compiled.deserialize(text), compiled.getObjectInspector());
+            assertEquals(row, expected, actual);
+        }
+    }
+
+    @Test
+    public void testReusesRow() throws Exception {
+        JsonSerDe instance = serDe(true, null);
+        StructObjectInspector soi = (StructObjectInspector) instance.getObjectInspector();
+
+        Object first = instance.deserialize(new Text("{\"i\":1}"));
+        Object i = soi.getStructFieldData(first, soi.getStructFieldRef("i"));
+        assertTrue(i instanceof IntWritable);
+        assertEquals(1, ((IntWritable) i).get());
+
+        Object second = instance.deserialize(new Text("{\"i\":2,\"name\":\"n\"}"));
+        assertSame(first, second);
+        assertSame(i, soi.getStructFieldData(second, soi.getStructFieldRef("i")));
+        assertEquals(2, ((IntWritable) i).get());
+
+        instance.deserialize(new Text("{\"name\":\"n\"}"));
+        assertNull(soi.getStructFieldData(second, soi.getStructFieldRef("i")));
+    }
+
+    @Test
+    public void testProjection() throws Exception {
+        Configuration conf = new Configuration(false);
+        ColumnProjectionUtils.appendReadColumns(conf, Arrays.asList(0, 11),
+                Arrays.asList("i", "pos"), Collections.singletonList("pos.lat"));
+        JsonSerDe instance = serDe(true, conf);
+
+        List<?> row = (List<?>) ObjectInspectorUtils.copyToStandardJavaObject(
+                instance.deserialize(new Text(ROWS[0])), instance.getObjectInspector());
+        assertEquals(1, row.get(0));
+        assertNull(row.get(1));
+        assertNull(row.get(7));
+        assertEquals(Arrays.asList(1.5, null), row.get(11));
+    }
+
+    @Test
+    public void testMalformed() throws Exception {
+        try {
+            serDe(true, null).deserialize(new Text("{\"i\":1,\"tags\":[\"a\""));
+            fail();
+        } catch (SerDeException expected) {
+        }
+
+        Properties tbl = new Properties();
+        tbl.setProperty(serdeConstants.LIST_COLUMNS, "i,name");
+        tbl.setProperty(serdeConstants.LIST_COLUMN_TYPES, "int,string");
+        tbl.setProperty(JsonSerDe.PROP_COMPILED_PARSING, "true");
+        tbl.setProperty(JsonSerDe.PROP_IGNORE_MALFORMED_JSON, "true");
+        JsonSerDe instance = new JsonSerDe();
+        instance.initialize(null, tbl);
+        assertEquals(Arrays.asList(null, null), instance.deserialize(new Text("{\"i\":1,\"name\"}")));
+    }
+
+    @Test
+    public void testExactDecimals() throws Exception {
+        Properties tbl = new Properties();
+        tbl.setProperty(serdeConstants.LIST_COLUMNS, "amount,rate");
+        tbl.setProperty(serdeConstants.LIST_COLUMN_TYPES, "decimal(18,4),decimal(38,18)");
+        tbl.setProperty(JsonSerDe.PROP_COMPILED_PARSING, "true");
+        JsonSerDe instance = new JsonSerDe();
+        instance.initialize(null, tbl);
+
+        List<?> row = (List<?>) instance.deserialize(
+                new Text("{\"amount\":12345678901234.56789,\"rate\":0.12345678901234567891}"));
+        assertEquals(HiveDecimal.create("12345678901234.5679"), ((HiveDecimalWritable) row.get(0)).getHiveDecimal());
+        assertEquals(HiveDecimal.create("0.123456789012345679"), ((HiveDecimalWritable) row.get(1)).getHiveDecimal());
+
+        row = (List<?>) instance.deserialize(new Text("{\"amount\":-1.5e3,\"rate\":\"2.5\"}"));
+        assertEquals(HiveDecimal.create("-1500"), ((HiveDecimalWritable) row.get(0)).getHiveDecimal());
+        assertEquals(HiveDecimal.create("2.5"), ((HiveDecimalWritable) row.get(1)).getHiveDecimal());
+
+        // too many digits for the column
+        row = (List<?>) instance.deserialize(new Text("{\"amount\":123456789012345,\"rate\":1e30}"));
+        assertNull(row.get(0));
+        assertNull(row.get(1));
+    }
+
+    @Test
+    public void testDotsInKeysParsesJsonObjects() throws Exception {
+        Properties tbl = new Properties();
+        tbl.setProperty(serdeConstants.LIST_COLUMNS, "a_b");
+        tbl.setProperty(serdeConstants.LIST_COLUMN_TYPES, "int");
+        tbl.setProperty(JsonSerDe.PROP_COMPILED_PARSING, "true");
+        tbl.setProperty(JsonSerDe.PROP_DOTS_IN_KEYS, "true");
+        JsonSerDe instance = new JsonSerDe();
+        instance.initialize(null, tbl);
+        assertTrue(instance.deserialize(new Text("{\"a.b\":1}")) instanceof JSONObject);
+    }
+}
@@ -118,4 +118,31 @@ public class JsonSerDeDotsInKeysTest {
 
         assertEquals(null, innerWithDotsResult);
     }
+    @Test
+    public void testSparseRows() throws Exception {
+        JsonSerDe instance = new JsonSerDe();
+        Properties tbl = new Properties();
+        tbl.setProperty(serdeConstants.LIST_COLUMNS, "a_b,a_b_c,x_y,plain");
+        tbl.setProperty(serdeConstants.LIST_COLUMN_TYPES, "string,string,string,string");
+        tbl.setProperty(JsonSerDe.PROP_DOTS_IN_KEYS, "true");
+        instance.initialize(null, tbl);
+        StructObjectInspector soi = (StructObjectInspector) instance.getObjectInspector();
+
+        String[] rows = {
+                "{\"a.b\": \"1\", \"a.b.c\": \"2\", \"x.y\": \"3\", \"plain\": \"4\"}",
+                "{\"a_b.c\": \"5\"}",
+                // the first dotted key is taken, and the key as written before it
+                "{\"a.b_c\": \"6\", \"a_b.c\": \"7\", \"x.y\": \"8\", \"x_y\": \"9\"}",
+        };
+        String[][] expected = {
+                {"1", "2", "3", "4"}, {null, "5", null, null}, {null, "6", "9", null},
+        };
+        String[] columns = {"a_b", "a_b_c", "x_y", "plain"};
+        for (int i = 0; i < rows.length; i++) {
+            Object row = instance.deserialize(new Text(rows[i]));
+            for (int j = 0; j < columns.length; j++) {
+                assertEquals(rows[i], expected[i][j], soi.getStructFieldData(row, soi.getStructFieldRef(columns[j])));
+            }
+        }
+    }
 }
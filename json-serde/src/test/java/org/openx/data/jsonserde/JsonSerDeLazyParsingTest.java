@@ -0,0 +1,74 @@
+package org.openx.data.jsonserde;
+
+import io.starburst.openjson.JSONObject;
+import org.apache.hadoop.hive.serde.serdeConstants;
+import org.apache.hadoop.hive.serde2.SerDeException;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that lazily parsed rows read the same as eagerly parsed ones.
+ */
+public class JsonSerDeLazyParsingTest {
+
+    static final String[] ROWS = {
+            "{\"id\":1,\"Name\":\"one\",\"tags\":[\"a\",\"b\"],\"attrs\":{\"x\":1,\"y\":2},"
+                    + "\"pos\":{\"lat\":1.5,\"lon\":-2.25},\"ts\":\"2016-01-02 03:04:05\",\"raw\":{\"k\":[1,2]}}",
+            "  {\"id\":\"2\",\"tags\":\"promoted\",\"pos\":[3.5,4.5],\"raw\":\"plain\"}",
+            "{\"id\":3,\"name\":null,\"tags\":[],\"attrs\":{},\"ts\":1454382245}",
+            // lenient syntax goes through the tokener
+            "{id:4,'name'='four';\"tags\":[\"c\",,]}",
+            "[5,\"five\",[\"e\"],{\"z\":26},{\"lat\":0,\"lon\":0},\"2016-01-01 00:00:00\",\"r\"]",
+    };
+
+    private JsonSerDe serDe(boolean lazy) throws SerDeException {
+        Properties tbl = new Properties();
+        tbl.setProperty(serdeConstants.LIST_COLUMNS, "id,name,tags,attrs,pos,ts,raw");
+        tbl.setProperty(serdeConstants.LIST_COLUMN_TYPES, "int,string,array<string>,map<string,int>,"
+                + "struct<lat:double,lon:double>,timestamp,string");
+        tbl.setProperty(JsonSerDe.PROP_LAZY_PARSING, String.valueOf(lazy));
+
+        JsonSerDe instance = new JsonSerDe();
+        instance.initialize(null, tbl);
+        return instance;
+    }
+
+    @Test
+    public void testSameAsEager() throws Exception {
+        JsonSerDe eager = serDe(false);
+        JsonSerDe lazy = serDe(true);
+        Text text = new Text();
+
+        for (String row : ROWS) {
+            text.set(row);
+            Object expected = ObjectInspectorUtils.copyToStandardJavaObject(
+                    eager.deserialize(text), eager.getObjectInspector());
+            Object actual = ObjectInspectorUtils.copyToStandardJavaObject(
+                    lazy.deserialize(text), lazy.getObjectInspector());
+            assertEquals(row, expected, actual);
+        }
+    }
+
+    @Test
+    public void testReturnsJsonObject() throws Exception {
+        Object row = serDe(true).deserialize(new Text(ROWS[0]));
+        assertTrue(row instanceof JSONObject);
+        assertEquals("one", ((JSONObject) row).get("name"));
+    }
+
+    @Test
+    public void testMalformed() throws Exception {
+        try {
+            serDe(true).deserialize(new Text("{\"id\":1,\"tags\":[\"a\""));
+            fail();
+        } catch (SerDeException expected) {
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.openx.data.jsonserde;
+
+import io.starburst.openjson.JSONObject;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.serde.serdeConstants;
+import org.apache.hadoop.hive.serde2.ColumnProjectionUtils;
+import org.apache.hadoop.hive.serde2.SerDeException;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that only the keys of projected columns are materialized.
+ */
+public class JsonSerDeProjectionTest {
+
+    static final String ROW = "{\"ID\":\"a1\",\"skipped\":{\"deep\":[1,2,{\"x\":\"y\"}]},"
+            + "\"ts\":1234,\"my.dotted\":\"d\",\"renamed\":true,\"other\":'z'}";
+
+    private JsonSerDe serDe(Configuration conf, boolean pushdown) throws Exception {
+        Properties tbl = new Properties();
+        tbl.setProperty(serdeConstants.LIST_COLUMNS, "id,skipped,ts,my_dotted,flag");
+        tbl.setProperty(serdeConstants.LIST_COLUMN_TYPES,
+                "string,struct<deep:array<string>>,bigint,string,boolean");
+        tbl.setProperty(JsonSerDe.PROP_DOTS_IN_KEYS, "true");
+        tbl.setProperty("mapping.flag", "renamed");
+        tbl.setProperty(JsonSerDe.PROP_PROJECTION_PUSHDOWN, String.valueOf(pushdown));
+
+        JsonSerDe instance = new JsonSerDe();
+        instance.initialize(conf, tbl);
+        return instance;
+    }
+
+    private Configuration readColumns(Integer... ids) {
+        Configuration conf = new Configuration(false);
+        String[] all = {"id", "skipped", "ts", "my_dotted", "flag"};
+        String[] names = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            names[i] = all[ids[i]];
+        }
+        ColumnProjectionUtils.appendReadColumns(conf, Arrays.asList(ids), Arrays.asList(names),
+                Collections.<String>emptyList());
+        return conf;
+    }
+
+    @Test
+    public void testSkipsUnreadColumns() throws Exception {
+        JsonSerDe instance = serDe(readColumns(0, 3, 4), true);
+        StructObjectInspector soi = (StructObjectInspector) instance.getObjectInspector();
+
+        JSONObject row = (JSONObject) instance.deserialize(new Text(ROW));
+
+        assertEquals(3, row.length());
+        assertFalse(row.has("skipped"));
+        assertFalse(row.has("other"));
+        assertEquals("a1", soi.getStructFieldData(row, soi.getStructFieldRef("id")));
+        assertEquals("d", soi.getStructFieldData(row, soi.getStructFieldRef("my_dotted")));
+        assertEquals(Boolean.TRUE, soi.getStructFieldData(row, soi.getStructFieldRef("flag")));
+        assertNull(soi.getStructFieldData(row, soi.getStructFieldRef("ts")));
+    }
+
+    @Test
+    public void testNoColumns() throws Exception {
+        JsonSerDe instance = serDe(readColumns(), true);
+        JSONObject row = (JSONObject) instance.deserialize(new Text(ROW));
+        assertEquals(0, row.length());
+    }
+
+    @Test
+    public void testReadsAllColumnsWithoutProjection() throws Exception {
+        assertEquals(6, ((JSONObject) serDe(null, true).deserialize(new Text(ROW))).length());
+        assertEquals(6, ((JSONObject) serDe(new Configuration(false), true).deserialize(new Text(ROW))).length());
+        assertEquals(6, ((JSONObject) serDe(readColumns(0), false).deserialize(new Text(ROW))).length());
+    }
+
+    @Test
+    public void testNestedPaths() throws Exception {
+        Properties tbl = new Properties();
+        tbl.setProperty(serdeConstants.LIST_COLUMNS, "id,payload,items,m");
+        tbl.setProperty(serdeConstants.LIST_COLUMN_TYPES,
+                "string,struct<user:struct<id:int,name:string>,blob:string>,"
+                        + "array<struct<price:double,descr:string>>,map<string,struct<a:int,b:int>>");
+        tbl.setProperty("mapping.descr", "description");
+        tbl.setProperty(JsonSerDe.PROP_PROJECTION_PUSHDOWN, "true");
+
+        Configuration conf = new Configuration(false);
+        ColumnProjectionUtils.appendReadColumns(conf, Arrays.asList(1, 2, 3),
+                Arrays.asList("payload", "items", "m"),
+                Arrays.asList("payload.user.id", "items.descr", "m.a"));
+
+        JsonSerDe instance = new JsonSerDe();
+        instance.initialize(conf, tbl);
+
+        JSONObject row = (JSONObject) instance.deserialize(new Text("{\"id\":\"x\","
+                + "\"payload\":{\"user\":{\"id\":7,\"name\":\"n\"},\"blob\":\"bbbb\"},"
+                + "\"items\":[{\"price\":1.5,\"description\":\"d\"},[2.5,\"positional\"]],"
+                + "\"m\":{\"k\":{\"a\":1,\"b\":2}}}"));
+
+        assertFalse(row.has("id"));
+        assertEquals("{\"user\":{\"id\":7}}", row.get("payload").toString());
+        assertEquals("[{\"description\":\"d\"},[2.5,\"positional\"]]", row.get("items").toString());
+        assertEquals("{\"k\":{\"a\":1,\"b\":2}}", row.get("m").toString());
+    }
+
+    @Test
+    public void testMalformedSkippedValue() throws Exception {
+        JsonSerDe instance = serDe(readColumns(0), true);
+        try {
+            instance.deserialize(new Text("{\"id\":\"a\",\"skipped\":{\"deep\":[1,2}}"));
+            fail("malformed row was accepted");
+        } catch (SerDeException expected) {
+        }
+    }
+}
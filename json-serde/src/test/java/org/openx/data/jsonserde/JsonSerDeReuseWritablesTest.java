@@ -0,0 +1,167 @@
+package org.openx.data.jsonserde;
+
+import org.apache.hadoop.hive.serde.serdeConstants;
+import org.apache.hadoop.hive.serde2.SerDeException;
+import org.apache.hadoop.hive.serde2.objectinspector.ListObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.StructField;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks that primitive inspectors hand out one writable per thread when asked to.
+ */
+public class JsonSerDeReuseWritablesTest {
+
+    static final String[] ROWS = {
+            "{\"i\":1,\"l\":10000000000,\"d\":1.5,\"b\":true,\"s\":\"one\",\"ts\":\"2016-01-02 03:04:05\","
+                    + "\"dt\":\"2016-01-02\",\"dec\":\"1.25\",\"bin\":\"AQI=\"}",
+            "{\"i\":\"2\",\"l\":-3,\"d\":-2,\"b\":\"false\",\"s\":\"two\",\"ts\":\"2017-05-06 07:08:09\","
+                    + "\"dt\":\"2017-05-06\",\"dec\":3,\"bin\":\"AwQF\"}",
+            "{\"i\":null,\"s\":null}",
+    };
+
+    private JsonSerDe serDe(boolean reuse) throws SerDeException {
+        Properties tbl = new Properties();
+        tbl.setProperty(serdeConstants.LIST_COLUMNS, "i,l,d,b,s,ts,dt,dec,bin");
+        tbl.setProperty(serdeConstants.LIST_COLUMN_TYPES,
+                "int,bigint,double,boolean,string,timestamp,date,decimal(10,2),binary");
+        tbl.setProperty(JsonSerDe.PROP_REUSE_WRITABLES, String.valueOf(reuse));
+
+        JsonSerDe instance = new JsonSerDe();
+        instance.initialize(null, tbl);
+        return instance;
+    }
+
+    @Test
+    public void testSameValuesAsFresh() throws Exception {
+        JsonSerDe fresh = serDe(false);
+        JsonSerDe reused = serDe(true);
+        Text text = new Text();
+
+        for (String row : ROWS) {
+            text.set(row);
+            Object expected = ObjectInspectorUtils.copyToStandardObject(fresh.deserialize(text),
+                    fresh.getObjectInspector(), ObjectInspectorUtils.ObjectInspectorCopyOption.WRITABLE);
+            Object actual = ObjectInspectorUtils.copyToStandardObject(reused.deserialize(text),
+                    reused.getObjectInspector(), ObjectInspectorUtils.ObjectInspectorCopyOption.WRITABLE);
+            assertEquals(row, expected, actual);
+        }
+    }
+
+    @Test
+    public void testCopiedKeysOutliveTheRow() throws Exception {
+        JsonSerDe fresh = serDe(false);
+        JsonSerDe reused = serDe(true);
+        List<List<Object>> expected = copyKeys(fresh);
+        List<List<Object>> actual = copyKeys(reused);
+        assertEquals(expected, actual);
+        assertEquals(new IntWritable(1), actual.get(0).get(0));
+        assertEquals(new Text("two"), actual.get(1).get(4));
+    }
+
+    /*
+     * Copies the fields of each row as they are read, the way GroupByOperator
+     * copies the keys it keeps.
+     */
+    private List<List<Object>> copyKeys(JsonSerDe instance) throws SerDeException {
+        StructObjectInspector soi = (StructObjectInspector) instance.getObjectInspector();
+        List<List<Object>> keys = new ArrayList<>();
+        for (String row : ROWS) {
+            Object data = instance.deserialize(new Text(row));
+            List<Object> key = new ArrayList<>();
+            for (StructField field : soi.getAllStructFieldRefs()) {
+                key.add(ObjectInspectorUtils.copyToStandardObject(soi.getStructFieldData(data, field),
+                        field.getFieldObjectInspector(), ObjectInspectorUtils.ObjectInspectorCopyOption.WRITABLE));
+            }
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    @Test
+    public void testWritablePerThread() throws Exception {
+        JsonSerDe instance = serDe(true);
+        StructObjectInspector soi = (StructObjectInspector) instance.getObjectInspector();
+        StructField field = soi.getStructFieldRef("i");
+        final PrimitiveObjectInspector poi = (PrimitiveObjectInspector) field.getFieldObjectInspector();
+
+        Object row = instance.deserialize(new Text(ROWS[0]));
+        final Object value = soi.getStructFieldData(row, field);
+        IntWritable first = (IntWritable) poi.getPrimitiveWritableObject(value);
+        assertEquals(1, first.get());
+
+        Object next = soi.getStructFieldData(instance.deserialize(new Text(ROWS[1])), field);
+        IntWritable second = (IntWritable) poi.getPrimitiveWritableObject(next);
+        assertSame(first, second);
+        assertEquals(2, second.get());
+
+        final AtomicReference<Object> other = new AtomicReference<>();
+        Thread thread = new Thread(() -> other.set(poi.getPrimitiveWritableObject(value)));
+        thread.start();
+        thread.join();
+        assertNotSame(first, other.get());
+        assertEquals(new IntWritable(1), other.get());
+        assertEquals(2, second.get());
+    }
+
+    @Test
+    public void testFreshWritablesByDefault() throws Exception {
+        JsonSerDe instance = serDe(false);
+        StructObjectInspector soi = (StructObjectInspector) instance.getObjectInspector();
+        StructField field = soi.getStructFieldRef("s");
+        PrimitiveObjectInspector poi = (PrimitiveObjectInspector) field.getFieldObjectInspector();
+
+        Object value = soi.getStructFieldData(instance.deserialize(new Text(ROWS[0])), field);
+        Object first = poi.getPrimitiveWritableObject(value);
+        Object second = poi.getPrimitiveWritableObject(value);
+        assertNotSame(first, second);
+        assertEquals(new Text("one"), first);
+    }
+
+    @Test
+    public void testCompareFieldsOfSameType() throws Exception {
+        Properties tbl = new Properties();
+        tbl.setProperty(serdeConstants.LIST_COLUMNS, "t1,t2,d1,d2,a");
+        tbl.setProperty(serdeConstants.LIST_COLUMN_TYPES,
+                "timestamp,timestamp,decimal(10,2),decimal(10,2),array<timestamp>");
+        tbl.setProperty(JsonSerDe.PROP_REUSE_WRITABLES, "true");
+        JsonSerDe instance = new JsonSerDe();
+        instance.initialize(null, tbl);
+        StructObjectInspector soi = (StructObjectInspector) instance.getObjectInspector();
+        Object row = instance.deserialize(new Text("{\"t1\":\"2016-01-02 03:04:05\",\"t2\":\"2017-01-02 03:04:05\","
+                + "\"d1\":1.25,\"d2\":3,\"a\":[\"2016-01-02 03:04:05\",\"2017-01-02 03:04:05\"]}"));
+
+        StructField t1 = soi.getStructFieldRef("t1");
+        StructField t2 = soi.getStructFieldRef("t2");
+        assertEquals(-1, ObjectInspectorUtils.compare(
+                soi.getStructFieldData(row, t1), t1.getFieldObjectInspector(),
+                soi.getStructFieldData(row, t2), t2.getFieldObjectInspector()));
+
+        StructField d1 = soi.getStructFieldRef("d1");
+        StructField d2 = soi.getStructFieldRef("d2");
+        assertEquals(-1, ObjectInspectorUtils.compare(
+                soi.getStructFieldData(row, d1), d1.getFieldObjectInspector(),
+                soi.getStructFieldData(row, d2), d2.getFieldObjectInspector()));
+
+        // the elements of a list share their inspector, as sort_array compares them
+        ListObjectInspector loi = (ListObjectInspector) soi.getStructFieldRef("a").getFieldObjectInspector();
+        Object list = soi.getStructFieldData(row, soi.getStructFieldRef("a"));
+        ObjectInspector eoi = loi.getListElementObjectInspector();
+        assertEquals(-1, ObjectInspectorUtils.compare(
+                loi.getListElement(list, 0), eoi, loi.getListElement(list, 1), eoi));
+    }
+}
@@ -20,12 +20,14 @@ import org.apache.hadoop.hive.serde2.SerDeException;
 import org.apache.hadoop.hive.serde2.objectinspector.ListObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.StructField;
 import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.StringObjectInspector;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
 import org.junit.Test;
+import org.openx.data.jsonserde.objectinspector.JsonStructObjectInspector;
 import org.openx.data.jsonserde.objectinspector.primitive.JavaStringBooleanObjectInspector;
 import org.openx.data.jsonserde.objectinspector.primitive.JavaStringByteObjectInspector;
 import org.openx.data.jsonserde.objectinspector.primitive.JavaStringDecimalObjectInspector;
@@ -43,12 +45,17 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.MathContext;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
@@ -1005,4 +1012,186 @@ public class JsonSerDeTest {
 
         assertEquals("{\"structCol\":{\"name\":\"myName\"},\"structNullCol\":{\"name\":null},\"missingStructCol\":null}", jsonStr);
     }
+
+    @Test
+    public void testShapePrediction() throws SerDeException {
+        System.out.println("testShapePrediction");
+        JsonSerDe serde = new JsonSerDe();
+        Properties tbl = new Properties();
+        tbl.setProperty(serdeConstants.LIST_COLUMNS, "shape_id,shape_name,shape_score");
+        tbl.setProperty(serdeConstants.LIST_COLUMN_TYPES, "int,string,double");
+        serde.initialize(null, tbl);
+        JsonStructObjectInspector soi = (JsonStructObjectInspector) serde.getObjectInspector();
+        long lookups = soi.getShapeLookups();
+        long hits = soi.getShapeHits();
+
+        String[] rows = {
+                "{\"shape_name\":\"a\",\"shape_id\":1,\"shape_score\":1.5}",
+                "{\"shape_name\":\"b\",\"SHAPE_ID\":2,\"shape_score\":2.5}",
+                "{\"shape_name\":\"c\",\"shape_id\":3,\"shape_score\":3.5}",
+                "{\"shape_score\":4.5,\"shape_id\":4,\"shape_name\":\"d\"}",
+                "{\"shape_id\":5}",
+        };
+        Object[][] expected = {
+                {1, "a", 1.5}, {2, "b", 2.5}, {3, "c", 3.5}, {4, "d", 4.5}, {5, null, null},
+        };
+        List<? extends StructField> fields = soi.getAllStructFieldRefs();
+        for (int i = 0; i < rows.length; i++) {
+            Object row = serde.deserialize(new Text(rows[i]));
+            for (int j = 0; j < fields.size(); j++) {
+                Object value = soi.getStructFieldData(row, fields.get(j));
+                if (value != null) {
+                    value = ((PrimitiveObjectInspector) fields.get(j).getFieldObjectInspector())
+                            .getPrimitiveJavaObject(value);
+                }
+                assertEquals(rows[i], expected[i][j], value);
+            }
+        }
+
+        assertEquals(15, soi.getShapeLookups() - lookups);
+        // the first row teaches the order, the second and third follow it,
+        // and the fourth changes it
+        assertEquals(1 + 3 + 3 + 1 + 0, soi.getShapeHits() - hits);
+    }
+
+    @Test
+    public void testResolvedFieldKeys() throws SerDeException {
+        System.out.println("testResolvedFieldKeys");
+        JsonSerDe serde = new JsonSerDe();
+        Properties tbl = new Properties();
+        tbl.setProperty(serdeConstants.LIST_COLUMNS, "ts,a_b,plain");
+        tbl.setProperty(serdeConstants.LIST_COLUMN_TYPES, "string,int,int");
+        tbl.setProperty(JsonSerDe.PFX + "ts", "Time-Stamp");
+        tbl.setProperty(JsonSerDe.PROP_DOTS_IN_KEYS, "true");
+        serde.initialize(null, tbl);
+        StructObjectInspector soi = (StructObjectInspector) serde.getObjectInspector();
+
+        String[] rows = {
+                "{\"Time-Stamp\":\"x\",\"a.b\":1,\"plain\":2}",
+                "{\"TIME-STAMP\":\"y\",\"a_b\":3,\"PLAIN\":4}",
+                "{\"ts\":\"z\",\"a.b\":5,\"a_b\":6}",
+        };
+        Object[][] expected = {
+                {"x", 1, 2}, {"y", 3, 4}, {null, 6, null},
+        };
+        List<? extends StructField> fields = soi.getAllStructFieldRefs();
+        for (int i = 0; i < rows.length; i++) {
+            Object row = serde.deserialize(new Text(rows[i]));
+            for (int j = 0; j < fields.size(); j++) {
+                Object value = soi.getStructFieldData(row, fields.get(j));
+                if (value != null) {
+                    value = ((PrimitiveObjectInspector) fields.get(j).getFieldObjectInspector())
+                            .getPrimitiveJavaObject(value);
+                }
+                assertEquals(rows[i], expected[i][j], value);
+            }
+        }
+    }
+    @Test
+    public void testStructFieldsDataAsList() throws SerDeException {
+        System.out.println("testStructFieldsDataAsList");
+        JsonSerDe serde = new JsonSerDe();
+        Properties tbl = new Properties();
+        tbl.setProperty(serdeConstants.LIST_COLUMNS, "id,name,name_copy,doc,absent");
+        tbl.setProperty(serdeConstants.LIST_COLUMN_TYPES, "int,string,string,string,int");
+        tbl.setProperty(JsonSerDe.PFX + "name_copy", "NAME");
+        serde.initialize(null, tbl);
+        StructObjectInspector soi = (StructObjectInspector) serde.getObjectInspector();
+
+        Object row = serde.deserialize(new Text("{\"Name\":\"a\",\"extra\":1,\"doc\":{\"b\":2},\"ID\":null}"));
+        assertEquals(Arrays.<Object>asList(null, "a", "a", "{\"b\":2}", null), soi.getStructFieldsDataAsList(row));
+        List<? extends StructField> fields = soi.getAllStructFieldRefs();
+        for (int i = 0; i < fields.size(); i++) {
+            assertEquals(soi.getStructFieldData(row, fields.get(i)), soi.getStructFieldsDataAsList(row).get(i));
+        }
+    }
+    @Test
+    public void testConcurrentStructInspectors() throws Exception {
+        System.out.println("testConcurrentStructInspectors");
+        final int threads = 8;
+        final int rows = 20000;
+        final JsonSerDe[] serdes = new JsonSerDe[threads];
+        for (int t = 0; t < threads; t++) {
+            serdes[t] = new JsonSerDe();
+            initialize2(serdes[t]);
+        }
+        // the inspector is cached, so all threads share it
+        assertSame(serdes[0].getObjectInspector(), serdes[threads - 1].getObjectInspector());
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        JsonSerDe serde = serdes[thread];
+                        StructObjectInspector soi = (StructObjectInspector) serde.getObjectInspector();
+                        List<? extends StructField> fields = soi.getAllStructFieldRefs();
+                        for (int i = 0; i < rows; i++) {
+                            String four = thread + "-" + i;
+                            // rows with and without some keys, in changing order
+                            String json = i % 2 == 0
+                                    ? "{\"one\":true,\"two\":" + i + ",\"four\":\"" + four + "\",\"five\":\"" + thread + "\"}"
+                                    : "{\"five\":\"" + thread + "\",\"four\":\"" + four + "\",\"three\":[\"" + i + "\"]}";
+                            Object row = serde.deserialize(new Text(json));
+                            List<Object> values = soi.getStructFieldsDataAsList(row);
+                            assertEquals(json, four, values.get(3));
+                            assertEquals(json, String.valueOf(thread), values.get(4));
+                            assertEquals(json, i % 2 == 0 ? null : new JSONArray(true).put(String.valueOf(i)).toString(),
+                                    values.get(2) == null ? null : values.get(2).toString());
+                            assertEquals(json, four, soi.getStructFieldData(row, fields.get(3)));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    @Test
+    public void testPartitionsShareSchema() throws Exception {
+        System.out.println("testPartitionsShareSchema");
+        JsonSerDe first = new JsonSerDe();
+        initialize2(first);
+        JsonSerDe second = new JsonSerDe();
+        initialize2(second);
+        assertSame(first.getObjectInspector(), second.getObjectInspector());
+        assertSame(first.options, second.options);
+
+        // any property the schema is built from gives another one
+        JsonSerDe mapped = new JsonSerDe();
+        Properties tbl = new Properties();
+        tbl.setProperty(serdeConstants.LIST_COLUMNS, "one,two,three,four,five");
+        tbl.setProperty(serdeConstants.LIST_COLUMN_TYPES, "boolean,float,array<string>,string,string");
+        tbl.setProperty(JsonSerDe.PFX + "five", "six");
+        mapped.initialize(null, tbl);
+        assertTrue(first.options != mapped.options);
+        assertEquals("six", mapped.options.getMappings().get("five"));
+        assertEquals("x", ((StructObjectInspector) mapped.getObjectInspector()).getStructFieldData(
+                mapped.deserialize(new Text("{\"five\":\"y\",\"six\":\"x\"}")),
+                ((StructObjectInspector) mapped.getObjectInspector()).getStructFieldRef("five")));
+
+        JsonSerDe samePartition = new JsonSerDe();
+        samePartition.initialize(null, (Properties) tbl.clone());
+        assertSame(mapped.options, samePartition.options);
+
+        JsonSerDe remapped = new JsonSerDe();
+        Properties remappedTbl = (Properties) tbl.clone();
+        remappedTbl.setProperty(JsonSerDe.PFX + "five", "SEVEN");
+        remapped.initialize(null, remappedTbl);
+        assertTrue(mapped.options != remapped.options);
+        assertEquals("seven", remapped.options.getMappings().get("five"));
+
+        JsonSerDe caseSensitive = new JsonSerDe();
+        tbl.setProperty(JsonSerDe.PROP_CASE_INSENSITIVE, "false");
+        caseSensitive.initialize(null, tbl);
+        assertTrue(mapped.options != caseSensitive.options);
+        assertEquals(false, caseSensitive.options.isCaseInsensitive());
+    }
 }
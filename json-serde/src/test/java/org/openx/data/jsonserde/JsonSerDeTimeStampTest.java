@@ -20,6 +20,7 @@ import org.apache.hadoop.hive.serde.serdeConstants;
 import org.apache.hadoop.hive.serde2.SerDeException;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.StructField;
 import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
 import org.apache.hadoop.io.Text;
@@ -38,6 +39,8 @@ import java.util.Properties;
 import java.util.TimeZone;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 
@@ -75,6 +78,28 @@ public class JsonSerDeTimeStampTest {
             jstOi.getPrimitiveJavaObject(result.get("five")));
   }
 
+  @Test
+  public void testTimestampConvertedOncePerRow() throws Exception {
+    StructObjectInspector soi = (StructObjectInspector) instance.getObjectInspector();
+    StructField five = soi.getStructFieldRef("five");
+
+    Object row = instance.deserialize(new Text("{\"five\":\"2013-03-27 23:18:40\"}"));
+    Object first = soi.getStructFieldData(row, five);
+    assertEquals(org.apache.hadoop.hive.common.type.Timestamp.valueOf("2013-03-27 23:18:40"), first);
+    assertSame(first, soi.getStructFieldData(row, five));
+    assertSame(first, soi.getStructFieldsDataAsList(row).get(4));
+
+    row = instance.deserialize(new Text("{\"five\":\"2013-03-27 23:18:40\"}"));
+    Object next = soi.getStructFieldData(row, five);
+    assertEquals(first, next);
+    assertNotSame(first, next);
+
+    // a value that is not a timestamp is handed out as it was read
+    row = instance.deserialize(new Text("{\"five\":\"garbage\"}"));
+    assertEquals("garbage", soi.getStructFieldData(row, five));
+    assertEquals("garbage", soi.getStructFieldsDataAsList(row).get(4));
+  }
+
   @Test
   public void testUTCTimestampDeSerialize() throws Exception {
     // Test that timestamp object can be deserialized
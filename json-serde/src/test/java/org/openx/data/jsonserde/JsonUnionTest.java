@@ -5,14 +5,19 @@ import io.starburst.openjson.JSONObject;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.serde.serdeConstants;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.StructField;
 import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.UnionObjectInspector;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
 import org.junit.Before;
 import org.junit.Test;
+import org.openx.data.jsonserde.objectinspector.JsonObjectInspectorFactory;
+import org.openx.data.jsonserde.objectinspector.JsonStructOIOptions;
 
+import java.math.BigDecimal;
 import java.util.Properties;
 
 import static org.junit.Assert.assertEquals;
@@ -82,4 +87,31 @@ public class JsonUnionTest {
         assertTrue(val instanceof JSONArray);
         assertEquals(2, uoi.getTag(val));
     }
+
+    @Test
+    public void testTagWithoutTrying() throws Exception {
+        String[] types = {"int", "bigint", "smallint", "tinyint", "double", "float", "boolean"};
+        Object[] values = {"1", "-12", "+7", "007", "", "-", "+", "1.5", "abc", "Italian", "2147483647", "2147483648",
+                "99999", "32768", "127", "128", "0x1F", "0xZZ", "9223372036854775807", "99999999999999999999",
+                "1e10", "1E-3f", ".5", "5.", ".", "1e", " 2.5 ", "NaN", "-Infinity", "Infinite", "0x1p3", "1d",
+                "\u0663", 2, 3L, 1.5, new BigDecimal("2.5"), true, new JSONObject(true), new JSONArray(true)};
+
+        for (String type : types) {
+            UnionObjectInspector uoi = (UnionObjectInspector) JsonObjectInspectorFactory.getJsonObjectInspectorFromTypeInfo(
+                    TypeInfoUtils.getTypeInfoFromTypeString("uniontype<" + type + ",string>"),
+                    new JsonStructOIOptions(null));
+            PrimitiveObjectInspector poi = (PrimitiveObjectInspector) uoi.getObjectInspectors().get(0);
+            for (Object value : values) {
+                byte expected;
+                try {
+                    poi.getPrimitiveJavaObject(value);
+                    expected = 0;
+                } catch (Exception ex) {
+                    expected = 1;
+                }
+                assertEquals(type + " " + value, expected, uoi.getTag(value));
+                assertEquals(type + " " + value, expected, uoi.getTag(value));
+            }
+        }
+    }
 }
@@ -0,0 +1,179 @@
+package org.openx.data.jsonserde;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.common.type.DataTypePhysicalVariation;
+import org.apache.hadoop.hive.common.type.HiveDecimal;
+import org.apache.hadoop.hive.common.type.Timestamp;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DecimalColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ListColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.TimestampColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatchCtx;
+import org.apache.hadoop.hive.ql.metadata.VirtualColumn;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.typeinfo.StructTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that JSON lines are read into column vectors.
+ */
+public class JsonVectorizedRecordReaderTest {
+
+    static final String TYPE = "struct<id:int,total:bigint,ratio:double,ok:boolean,name:string,"
+            + "ts:timestamp,price:decimal(6,2),tags:array<string>>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private JsonVectorizedRecordReader reader(Properties tbl, String... lines) throws Exception {
+        VectorizedRowBatchCtx rowBatchCtx = new VectorizedRowBatchCtx();
+        rowBatchCtx.init((StructObjectInspector) TypeInfoUtils.getStandardJavaObjectInspectorFromTypeInfo(
+                TypeInfoUtils.getTypeInfoFromTypeString(TYPE)), new String[0]);
+        return reader(rowBatchCtx, tbl, lines);
+    }
+
+    private JsonVectorizedRecordReader reader(VectorizedRowBatchCtx rowBatchCtx, Properties tbl, String... lines)
+            throws Exception {
+        File file = folder.newFile();
+        Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+
+        JobConf job = new JobConf(false);
+        FileSplit split = new FileSplit(new Path(file.toURI()), 0, file.length(), (String[]) null);
+        return new JsonVectorizedRecordReader(job, split, rowBatchCtx, tbl);
+    }
+
+    @Test
+    public void testReadsColumns() throws Exception {
+        Properties tbl = new Properties();
+        tbl.setProperty("mapping.total", "sum");
+        JsonVectorizedRecordReader reader = reader(tbl,
+                "{\"id\":1,\"sum\":10000000000,\"ratio\":0.5,\"ok\":true,\"name\":\"one\","
+                        + "\"ts\":\"2016-01-02 03:04:05\",\"price\":\"12.345\",\"tags\":[\"a\",\"b\"]}",
+                "{\"id\":\"2\",\"ratio\":3,\"ok\":\"false\",\"name\":{\"a\":1},\"price\":99999.5,\"tags\":[]}",
+                "",
+                "[3,4,5.5,false,\"three\",1454382245,1,[\"c\"]]");
+        VectorizedRowBatch batch = reader.createValue();
+
+        assertTrue(reader.next(NullWritable.get(), batch));
+        assertEquals(4, batch.size);
+
+        LongColumnVector id = (LongColumnVector) batch.cols[0];
+        assertEquals(1, id.vector[0]);
+        assertEquals(2, id.vector[1]);
+        assertTrue(id.isNull[2]);
+        assertEquals(3, id.vector[3]);
+
+        LongColumnVector total = (LongColumnVector) batch.cols[1];
+        assertEquals(10000000000L, total.vector[0]);
+        assertTrue(total.isNull[1]);
+
+        DoubleColumnVector ratio = (DoubleColumnVector) batch.cols[2];
+        assertEquals(0.5, ratio.vector[0], 0.0);
+        assertEquals(3.0, ratio.vector[1], 0.0);
+        assertEquals(5.5, ratio.vector[3], 0.0);
+
+        LongColumnVector ok = (LongColumnVector) batch.cols[3];
+        assertEquals(1, ok.vector[0]);
+        assertEquals(0, ok.vector[1]);
+        assertFalse(ok.isNull[3]);
+
+        BytesColumnVector name = (BytesColumnVector) batch.cols[4];
+        assertEquals("one", name.toString(0));
+        assertEquals("{\"a\":1}", name.toString(1));
+        assertTrue(name.isNull[2]);
+
+        TimestampColumnVector ts = (TimestampColumnVector) batch.cols[5];
+        assertTimestamp("2016-01-02 03:04:05", ts, 0);
+        assertTrue(ts.isNull[1]);
+
+        DecimalColumnVector price = (DecimalColumnVector) batch.cols[6];
+        assertEquals(HiveDecimal.create("12.35"), price.vector[0].getHiveDecimal());
+        assertTrue(price.isNull[1]);
+        assertEquals(HiveDecimal.create(1), price.vector[3].getHiveDecimal());
+
+        ListColumnVector tags = (ListColumnVector) batch.cols[7];
+        assertEquals(2, tags.lengths[0]);
+        assertEquals("b", ((BytesColumnVector) tags.child).toString((int) tags.offsets[0] + 1));
+        assertEquals(0, tags.lengths[1]);
+        assertEquals(1, tags.lengths[3]);
+
+        assertFalse(reader.next(NullWritable.get(), batch));
+        assertEquals(0, batch.size);
+        reader.close();
+    }
+
+    @Test
+    public void testBatchSize() throws Exception {
+        String[] lines = new String[VectorizedRowBatch.DEFAULT_SIZE + 1];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = "{\"id\":" + i + "}";
+        }
+        JsonVectorizedRecordReader reader = reader(new Properties(), lines);
+        VectorizedRowBatch batch = reader.createValue();
+
+        assertTrue(reader.next(NullWritable.get(), batch));
+        assertEquals(VectorizedRowBatch.DEFAULT_SIZE, batch.size);
+        assertTrue(reader.next(NullWritable.get(), batch));
+        assertEquals(1, batch.size);
+        assertEquals(VectorizedRowBatch.DEFAULT_SIZE, ((LongColumnVector) batch.cols[0]).vector[0]);
+        assertTrue(batch.cols[4].isNull[0]);
+        assertFalse(reader.next(NullWritable.get(), batch));
+    }
+
+    @Test
+    public void testReadsProjectedColumns() throws Exception {
+        StructTypeInfo type = (StructTypeInfo) TypeInfoUtils.getTypeInfoFromTypeString(TYPE);
+        String[] names = type.getAllStructFieldNames().toArray(new String[0]);
+        TypeInfo[] types = type.getAllStructFieldTypeInfos().toArray(new TypeInfo[0]);
+        DataTypePhysicalVariation[] variations = new DataTypePhysicalVariation[names.length];
+        Arrays.fill(variations, DataTypePhysicalVariation.NONE);
+        // Hive only allocates vectors for the columns it reads
+        VectorizedRowBatchCtx rowBatchCtx = new VectorizedRowBatchCtx(names, types, variations,
+                new int[] {1, 5}, 0, 0, new VirtualColumn[0], new String[0], new DataTypePhysicalVariation[0]);
+
+        JsonVectorizedRecordReader reader = reader(rowBatchCtx, new Properties(),
+                "{\"id\":1,\"total\":7,\"name\":\"one\",\"ts\":\"2016-01-02 03:04:05\"}",
+                "{\"id\":2,\"ts\":\"2016-01-02 03:04:05.123456789\"}");
+        VectorizedRowBatch batch = reader.createValue();
+        assertNull(batch.cols[0]);
+        assertNull(batch.cols[4]);
+
+        assertTrue(reader.next(NullWritable.get(), batch));
+        assertEquals(2, batch.size);
+        LongColumnVector total = (LongColumnVector) batch.cols[1];
+        assertEquals(7, total.vector[0]);
+        assertTrue(total.isNull[1]);
+        TimestampColumnVector ts = (TimestampColumnVector) batch.cols[5];
+        assertTimestamp("2016-01-02 03:04:05", ts, 0);
+        assertTimestamp("2016-01-02 03:04:05.123456789", ts, 1);
+        assertFalse(reader.next(NullWritable.get(), batch));
+    }
+
+    // vectors hold the UTC-based millis of Hive timestamps, whatever the time zone
+    private static void assertTimestamp(String expected, TimestampColumnVector vector, int row) {
+        Timestamp timestamp = Timestamp.valueOf(expected);
+        assertEquals(timestamp.toEpochMilli(), vector.time[row]);
+        assertEquals(timestamp.getNanos(), vector.nanos[row]);
+    }
+}
@@ -0,0 +1,79 @@
+package org.openx.data.jsonserde.objectinspector;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ObjectInspectorCacheTest {
+
+    @Test
+    public void testEviction() {
+        ObjectInspectorCache cache = new ObjectInspectorCache(2);
+        JsonStructOIOptions options = new JsonStructOIOptions(Collections.<String, String>emptyMap());
+        ObjectInspector a = JsonObjectInspectorFactory.getJsonObjectInspectorFromTypeInfo(type("int"), options);
+        ObjectInspector b = JsonObjectInspectorFactory.getJsonObjectInspectorFromTypeInfo(type("string"), options);
+
+        assertNull(cache.get(new ObjectInspectorCache.Key("type", options, "a")));
+        assertSame(a, cache.putIfAbsent(new ObjectInspectorCache.Key("type", options, "a"), a));
+        assertSame(a, cache.putIfAbsent(new ObjectInspectorCache.Key("type", options, "a"), b));
+        cache.putIfAbsent(new ObjectInspectorCache.Key("type", options, "b"), b);
+        // "a" is used more recently than "b", which is evicted for "c"
+        assertSame(a, cache.get(new ObjectInspectorCache.Key("type", options, "a")));
+        cache.putIfAbsent(new ObjectInspectorCache.Key("type", options, "c"), b);
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get(new ObjectInspectorCache.Key("type", options, "b")));
+        assertSame(a, cache.get(new ObjectInspectorCache.Key("type", options, "a")));
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void testKeysCompareInspectorsByIdentity() {
+        JsonStructOIOptions options = new JsonStructOIOptions(Collections.<String, String>emptyMap());
+        ObjectInspector inspector = JsonObjectInspectorFactory.getJsonObjectInspectorFromTypeInfo(type("int"), options);
+        ObjectInspectorCache.Key key = new ObjectInspectorCache.Key("list", options, inspector);
+        assertEquals(key, new ObjectInspectorCache.Key("list", options, inspector));
+        assertEquals(key.hashCode(), new ObjectInspectorCache.Key("list", options, inspector).hashCode());
+        assertEquals(false, key.equals(new ObjectInspectorCache.Key("map", options, inspector)));
+    }
+
+    @Test
+    public void testStructInspectorsAreReused() {
+        TypeInfo type = type("struct<a:int,b:array<string>,c:map<string,struct<d:timestamp>>>");
+        JsonStructOIOptions options = new JsonStructOIOptions(ImmutableMap.of("a", "A"));
+        ObjectInspector inspector = JsonObjectInspectorFactory.getJsonObjectInspectorFromTypeInfo(type, options);
+
+        long misses = JsonObjectInspectorFactory.getCacheMisses();
+        long hits = JsonObjectInspectorFactory.getCacheHits();
+        JsonStructOIOptions same = new JsonStructOIOptions(ImmutableMap.of("a", "A"));
+        assertSame(inspector, JsonObjectInspectorFactory.getJsonObjectInspectorFromTypeInfo(type, same));
+        assertEquals(misses, JsonObjectInspectorFactory.getCacheMisses());
+        assertEquals(hits + 1, JsonObjectInspectorFactory.getCacheHits());
+
+        // options that change how keys are read give other inspectors
+        JsonStructOIOptions caseSensitive = new JsonStructOIOptions(ImmutableMap.of("a", "A"));
+        caseSensitive.setCaseInsensitive(false);
+        assertNotSame(inspector, JsonObjectInspectorFactory.getJsonObjectInspectorFromTypeInfo(type, caseSensitive));
+        JsonStructOIOptions formats = new JsonStructOIOptions(ImmutableMap.of("a", "A"));
+        formats.setTimestampFormats(new String("yyyy"));
+        JsonStructOIOptions sameFormats = new JsonStructOIOptions(ImmutableMap.of("a", "A"));
+        sameFormats.setTimestampFormats(new String("yyyy"));
+        assertSame(JsonObjectInspectorFactory.getJsonObjectInspectorFromTypeInfo(type, formats),
+                JsonObjectInspectorFactory.getJsonObjectInspectorFromTypeInfo(type, sameFormats));
+    }
+
+    private static TypeInfo type(String name) {
+        return TypeInfoUtils.getTypeInfoFromTypeString(name);
+    }
+}
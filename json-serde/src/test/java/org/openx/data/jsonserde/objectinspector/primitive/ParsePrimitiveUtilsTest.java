@@ -0,0 +1,110 @@
+package org.openx.data.jsonserde.objectinspector.primitive;
+
+import org.apache.hadoop.hive.common.type.Timestamp;
+import org.junit.Test;
+
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that timestamps parsed directly read the same as through the formatters.
+ */
+public class ParsePrimitiveUtilsTest {
+
+    private static Timestamp parseSlow(String s) {
+        return Timestamp.valueOf(ParsePrimitiveUtils.nonUTCFormat(s));
+    }
+
+    private static void assertSameAsSlow(String s) {
+        assertEquals(s, parseSlow(s), ParsePrimitiveUtils.parseIsoTimestamp(s));
+        assertEquals(s, parseSlow(s), ParsePrimitiveUtils.parseTimestamp(s, null));
+    }
+
+    @Test
+    public void testCommonShapes() {
+        assertSameAsSlow("2013-03-27 23:18:40");
+        assertSameAsSlow("2013-03-27T23:18:40");
+        assertSameAsSlow("2013-03-27 23:18:40.1");
+        assertSameAsSlow("2013-03-27 23:18:40.123456789");
+        assertSameAsSlow("2013-03-27T23:18:40Z");
+        assertSameAsSlow("2013-03-27T23:18:40.001Z");
+        assertSameAsSlow("2013-03-27T23:18:40+01:00");
+        assertSameAsSlow("2013-03-27T23:18:40-0630");
+        assertSameAsSlow("2013-03-27T23:18:40.5-06:00");
+        assertSameAsSlow("2016-02-29 00:00:00");
+        assertSameAsSlow("1969-12-31T23:59:59.999999999Z");
+        assertSameAsSlow("0001-01-01 00:00:00");
+        assertSameAsSlow("9999-12-31T23:59:59+17:59");
+    }
+
+    @Test
+    public void testOtherShapesLeftToFormatters() {
+        // out of range, or not read the same by the formatters
+        assertNull(ParsePrimitiveUtils.parseIsoTimestamp("2015-02-29 00:00:00"));
+        assertNull(ParsePrimitiveUtils.parseIsoTimestamp("2013-03-27 24:00:00"));
+        assertNull(ParsePrimitiveUtils.parseIsoTimestamp("2013-03-27 23:18:40Z"));
+        assertNull(ParsePrimitiveUtils.parseIsoTimestamp("2013-03-27T23:18:40."));
+        assertNull(ParsePrimitiveUtils.parseIsoTimestamp("2013-03-27T23:18:40.1234567891"));
+        assertNull(ParsePrimitiveUtils.parseIsoTimestamp("2013-03-27T23:18:40+01"));
+        assertNull(ParsePrimitiveUtils.parseIsoTimestamp("2013-3-27 23:18:40"));
+        assertNull(ParsePrimitiveUtils.parseIsoTimestamp(" 2013-03-27 23:18:40"));
+        assertNull(ParsePrimitiveUtils.parseIsoTimestamp("1454612111000"));
+
+        assertEquals(Timestamp.valueOf("2013-03-27 23:18:40"),
+                ParsePrimitiveUtils.parseTimestamp(" 2013-03-27 23:18:40", null));
+        assertEquals(Timestamp.ofEpochMilli(1454612111000L), ParsePrimitiveUtils.parseTimestamp("1454612111000", null));
+        assertEquals(Timestamp.ofEpochSecond(1454612111L), ParsePrimitiveUtils.parseTimestamp("1454612111", null));
+        assertEquals(Timestamp.ofEpochMilli(1454612111500L), ParsePrimitiveUtils.parseTimestamp("1454612111.5", null));
+    }
+
+    @Test
+    public void testRandomTimestamps() {
+        Random random = new Random(42);
+        String[] offsets = {"", "Z", "+00:00", "-01:30", "+0545", "-1200", "+14:00"};
+        for (int i = 0; i < 10000; i++) {
+            StringBuilder s = new StringBuilder();
+            s.append(String.format("%04d-%02d-%02d", 1 + random.nextInt(9999), 1 + random.nextInt(12),
+                    1 + random.nextInt(28)));
+            s.append(random.nextBoolean() ? 'T' : ' ');
+            s.append(String.format("%02d:%02d:%02d", random.nextInt(24), random.nextInt(60), random.nextInt(60)));
+            int fraction = random.nextInt(10);
+            if (fraction > 0) {
+                s.append('.');
+                for (int d = 0; d < fraction; d++) {
+                    s.append((char) ('0' + random.nextInt(10)));
+                }
+            }
+            if (s.charAt(10) == 'T') {
+                s.append(offsets[random.nextInt(offsets.length)]);
+            }
+            assertSameAsSlow(s.toString());
+        }
+    }
+
+    @Test
+    public void testFirstMatchingFormat() {
+        JavaStringTimestampObjectInspector oi = new JavaStringTimestampObjectInspector(
+                "yyyy-MM-dd'T'HH:mm:ss.SSSX,dd/MM/yyyy HH:mm,MM/dd/yyyy HH:mm,yyyyMMddHHmmss");
+
+        assertEquals(Timestamp.valueOf("2016-02-01 10:00:00"), oi.getPrimitiveJavaObject("01/02/2016 10:00"));
+        assertEquals(Timestamp.valueOf("2016-12-25 10:00:00"), oi.getPrimitiveJavaObject("12/25/2016 10:00"));
+        assertEquals(Timestamp.valueOf("2016-12-25 10:11:12"), oi.getPrimitiveJavaObject("20161225101112"));
+        assertEquals(Timestamp.valueOf("2016-12-25 10:11:12"), oi.getPrimitiveJavaObject(20161225101112L));
+        assertEquals(Timestamp.valueOf("2016-12-25 10:11:12.5"), oi.getPrimitiveJavaObject("2016-12-25T10:11:12.500Z"));
+        assertArrayEquals(new long[]{1, 1, 1, 2}, oi.getTimestampFormatHits());
+
+        try {
+            oi.getPrimitiveJavaObject("25.12.2016");
+            fail("no format matches");
+        } catch (DateTimeParseException expected) {
+            assertEquals("25.12.2016", expected.getParsedString());
+        }
+        assertArrayEquals(new long[]{1, 1, 1, 2}, oi.getTimestampFormatHits());
+        assertArrayEquals(new long[0], new JavaStringTimestampObjectInspector(null).getTimestampFormatHits());
+    }
+}
@@ -0,0 +1,98 @@
+package org.openx.data.jsonserde.objectinspector.primitive;
+
+import org.apache.hadoop.hive.common.type.Date;
+import org.apache.hadoop.hive.common.type.Timestamp;
+import org.apache.hadoop.hive.serde.serdeConstants;
+import org.apache.hadoop.hive.serde2.objectinspector.StructField;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+import org.openx.data.jsonserde.JsonSerDe;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * Checks that repeated timestamps and dates are parsed once.
+ */
+public class RecentValueCacheTest {
+
+    @Test
+    public void testDirectMapped() {
+        RecentValueCache<Integer> cache = new RecentValueCache<>(3);
+        assertEquals(4, cache.size());
+        assertEquals(1, new RecentValueCache<Integer>(1).size());
+
+        assertNull(cache.get("a"));
+        cache.put("a", 1);
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        // a single slot keeps the last string only
+        RecentValueCache<Integer> one = new RecentValueCache<>(1);
+        one.put("a", 1);
+        one.put("b", 2);
+        assertNull(one.get("a"));
+        assertEquals(Integer.valueOf(2), one.get("b"));
+    }
+
+    @Test
+    public void testTimestampsParsedOnce() {
+        JavaStringTimestampObjectInspector oi = new JavaStringTimestampObjectInspector(null, false, 16);
+        Timestamp first = oi.getPrimitiveJavaObject(new String("2016-01-02 03:04:05"));
+        assertEquals(Timestamp.valueOf("2016-01-02 03:04:05"), first);
+        // a cached timestamp is a new object, which its callers may change
+        first.setNanos(5);
+        Timestamp second = oi.getPrimitiveJavaObject(new String("2016-01-02 03:04:05"));
+        assertNotSame(first, second);
+        assertEquals(Timestamp.valueOf("2016-01-02 03:04:05"), second);
+        assertEquals(Timestamp.ofEpochSecond(1454382245L), oi.getPrimitiveJavaObject("1454382245"));
+        assertEquals(1, oi.getCacheHits());
+        assertEquals(2, oi.getCacheMisses());
+
+        JavaStringTimestampObjectInspector uncached = new JavaStringTimestampObjectInspector(null);
+        uncached.getPrimitiveJavaObject("2016-01-02 03:04:05");
+        assertEquals(0, uncached.getCacheHits());
+        assertEquals(0, uncached.getCacheMisses());
+    }
+
+    @Test
+    public void testDatesParsedOnce() {
+        JavaStringDateObjectInspector oi = new JavaStringDateObjectInspector(false, 16);
+        Date first = oi.getPrimitiveJavaObject(new String("2016-01-02"));
+        assertEquals(Date.valueOf("2016-01-02"), first);
+        Date second = oi.getPrimitiveJavaObject(new String("2016-01-02"));
+        assertNotSame(first, second);
+        first.setDayOfMonth(3);
+        assertEquals(Date.valueOf("2016-01-02"), second);
+        assertEquals(Date.valueOf("2016-01-02"), oi.getPrimitiveJavaObject(new String("2016-01-02")));
+        assertEquals(Date.valueOf("2016-01-02"), oi.getPrimitiveWritableObject("2016-01-02").get());
+        assertEquals(3, oi.getCacheHits());
+        assertEquals(1, oi.getCacheMisses());
+    }
+
+    @Test
+    public void testTableProperty() throws Exception {
+        Properties tbl = new Properties();
+        tbl.setProperty(serdeConstants.LIST_COLUMNS, "ts,dt");
+        tbl.setProperty(serdeConstants.LIST_COLUMN_TYPES, "timestamp,date");
+        tbl.setProperty(JsonSerDe.PROP_DATETIME_CACHE_SIZE, "64");
+        JsonSerDe serde = new JsonSerDe();
+        serde.initialize(null, tbl);
+
+        StructObjectInspector soi = (StructObjectInspector) serde.getObjectInspector();
+        StructField ts = soi.getStructFieldRef("ts");
+        JavaStringTimestampObjectInspector tsOI = (JavaStringTimestampObjectInspector) ts.getFieldObjectInspector();
+        long hits = tsOI.getCacheHits();
+        for (int i = 0; i < 3; i++) {
+            Object row = serde.deserialize(new Text("{\"ts\":\"2016-01-02 03:04:05\",\"dt\":\"2016-01-02\"}"));
+            assertEquals(Timestamp.valueOf("2016-01-02 03:04:05"),
+                    tsOI.getPrimitiveJavaObject(soi.getStructFieldData(row, ts)));
+        }
+        assertEquals(hits + 2, tsOI.getCacheHits());
+    }
+}
@@ -0,0 +1,460 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.starburst.openjson;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The name/value pairs of a {@link JSONObject}, kept in arrays and found by
+ * a linear scan while there are only a few of them. Most objects have few
+ * members, and this saves the entries of a {@link LinkedHashMap} and, for
+ * case insensitive objects, the second map of lower case keys that a
+ * {@link LinkedCaseInsensitiveMap} keeps. An object that grows past
+ * {@link #MAX_COMPACT_SIZE} members is moved into one of those maps, which
+ * are used from then on.
+ *
+ * <p>The map behaves exactly like the map it replaces: members are kept in
+ * insertion order, and when case insensitive, a key replaces the key that
+ * differs from it only in case, and is moved to the end.
+ */
+class CompactObjectMap extends AbstractMap<String, Object> {
+
+    static final int MAX_COMPACT_SIZE = 16;
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final boolean caseInsensitive;
+
+    /**
+     * The locale keys are converted to lower case with, as in
+     * {@link LinkedCaseInsensitiveMap}.
+     */
+    private final Locale locale;
+
+    private String[] keys = new String[INITIAL_CAPACITY];
+
+    /**
+     * The keys in lower case, or null if case sensitive.
+     */
+    private String[] lowerKeys;
+
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Incremented on every change to the keys, to fail fast on iterators
+     * that are no longer valid.
+     */
+    private int modCount;
+
+    /**
+     * All members, once there are too many to scan.
+     */
+    private Map<String, Object> promoted;
+
+    private Set<Entry<String, Object>> entrySet;
+
+    CompactObjectMap(boolean caseInsensitive) {
+        this.caseInsensitive = caseInsensitive;
+        if (caseInsensitive) {
+            locale = Locale.getDefault();
+            lowerKeys = new String[INITIAL_CAPACITY];
+        } else {
+            locale = null;
+        }
+    }
+
+    @Override
+    public int size() {
+        return promoted != null ? promoted.size() : size;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (promoted != null) {
+            return promoted.get(key);
+        }
+        int index = indexOf(key);
+        return index == -1 ? null : values[index];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (promoted != null) {
+            return promoted.containsKey(key);
+        }
+        return indexOf(key) != -1;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        if (promoted != null) {
+            return promoted.put(key, value);
+        }
+        return put(key, caseInsensitive ? key.toLowerCase(locale) : key, value);
+    }
+
+    /**
+     * Variant of {@link #put(String, Object)} for a key that the caller has
+     * already converted to lower case with the default locale.
+     */
+    Object put(String key, String lowerKey, Object value) {
+        if (promoted != null) {
+            if (promoted instanceof LinkedCaseInsensitiveMap && lowerKey != null) {
+                return ((LinkedCaseInsensitiveMap<Object>) promoted).put(key, lowerKey, value);
+            }
+            return promoted.put(key, value);
+        }
+
+        int index = caseInsensitive ? indexOfLowerKey(lowerKey) : indexOfKey(key);
+        Object old = null;
+        if (index != -1) {
+            old = values[index];
+            if (keys[index].equals(key)) {
+                values[index] = value;
+                return old;
+            }
+            // a key that only differs in case takes the place of the old one
+            removeAt(index);
+        }
+
+        if (size == MAX_COMPACT_SIZE) {
+            promote();
+            promoted.put(key, value);
+            return old;
+        }
+        if (size == keys.length) {
+            grow();
+        }
+        keys[size] = key;
+        if (caseInsensitive) {
+            lowerKeys[size] = lowerKey;
+        }
+        values[size] = value;
+        size++;
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (promoted != null) {
+            return promoted.remove(key);
+        }
+        int index = indexOf(key);
+        if (index == -1) {
+            return null;
+        }
+        Object old = values[index];
+        removeAt(index);
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        if (promoted != null) {
+            promoted.clear();
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            keys[i] = null;
+            if (caseInsensitive) {
+                lowerKeys[i] = null;
+            }
+            values[i] = null;
+        }
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return promoted != null ? promoted.keySet() : super.keySet();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (promoted != null) {
+            return promoted.entrySet();
+        }
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    /**
+     * Variant of {@link #get(Object)} for a key that the caller has already
+     * converted to lower case with the default locale.
+     */
+    Object get(String key, String lowerKey) {
+        if (promoted != null) {
+            return promoted.get(key);
+        }
+        int index = indexOfKey(key);
+        if (index == -1 && caseInsensitive) {
+            index = indexOfLowerKey(lowerKey);
+        }
+        return index == -1 ? null : values[index];
+    }
+
+    /**
+     * Sets {@code values[id]} to the value of each member whose key is in
+     * the index, numbered {@code id}, in one pass over the members.
+     */
+    void getAll(JSONKeyIndex index, Object[] values) {
+        if (promoted != null) {
+            for (Entry<String, Object> entry : promoted.entrySet()) {
+                int id = index.get(entry.getKey());
+                if (id != JSONKeyIndex.NOT_FOUND) {
+                    values[id] = entry.getValue();
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            int id = index.get(keys[i], caseInsensitive ? lowerKeys[i] : null);
+            if (id != JSONKeyIndex.NOT_FOUND) {
+                values[id] = this.values[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the value at {@code index} if its key is {@code key}, as
+     * written or, if case insensitive, in lower case.
+     *
+     * @return the value, or null if the key at {@code index} is another one,
+     * or the map no longer keeps members in arrays.
+     */
+    Object getAt(int index, String key, String lowerKey) {
+        if (promoted != null || index < 0 || index >= size) {
+            return null;
+        }
+        String found = keys[index];
+        if (found.equals(key) || (caseInsensitive && lowerKeys[index].equals(lowerKey))) {
+            return values[index];
+        }
+        return null;
+    }
+
+    /**
+     * Returns the position of the key, or -1 if it is not in the map or the
+     * map no longer keeps members in arrays.
+     */
+    int indexOf(Object key) {
+        if (promoted != null || !(key instanceof String)) {
+            return -1;
+        }
+        // keys differ in lower case, so a key as written is the only match
+        int index = indexOfKey((String) key);
+        if (index == -1 && caseInsensitive) {
+            index = indexOfLowerKey(((String) key).toLowerCase(locale));
+        }
+        return index;
+    }
+
+    private int indexOfKey(String key) {
+        for (int i = 0; i < size; i++) {
+            if (keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOfLowerKey(String lowerKey) {
+        for (int i = 0; i < size; i++) {
+            if (lowerKeys[i].equals(lowerKey)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void removeAt(int index) {
+        int moved = size - index - 1;
+        System.arraycopy(keys, index + 1, keys, index, moved);
+        System.arraycopy(values, index + 1, values, index, moved);
+        if (caseInsensitive) {
+            System.arraycopy(lowerKeys, index + 1, lowerKeys, index, moved);
+            lowerKeys[size - 1] = null;
+        }
+        size--;
+        keys[size] = null;
+        values[size] = null;
+        modCount++;
+    }
+
+    private void grow() {
+        int capacity = Math.min(keys.length * 2, MAX_COMPACT_SIZE);
+        String[] grownKeys = new String[capacity];
+        Object[] grownValues = new Object[capacity];
+        System.arraycopy(keys, 0, grownKeys, 0, size);
+        System.arraycopy(values, 0, grownValues, 0, size);
+        keys = grownKeys;
+        values = grownValues;
+        if (caseInsensitive) {
+            String[] grownLowerKeys = new String[capacity];
+            System.arraycopy(lowerKeys, 0, grownLowerKeys, 0, size);
+            lowerKeys = grownLowerKeys;
+        }
+    }
+
+    /**
+     * Moves all members into the map a {@link JSONObject} would otherwise
+     * use.
+     */
+    private void promote() {
+        if (caseInsensitive) {
+            LinkedCaseInsensitiveMap<Object> map = new LinkedCaseInsensitiveMap<Object>(locale);
+            for (int i = 0; i < size; i++) {
+                map.put(keys[i], lowerKeys[i], values[i]);
+            }
+            promoted = map;
+        } else {
+            Map<String, Object> map = new LinkedHashMap<String, Object>();
+            for (int i = 0; i < size; i++) {
+                map.put(keys[i], values[i]);
+            }
+            promoted = map;
+        }
+        keys = null;
+        lowerKeys = null;
+        values = null;
+        size = 0;
+        entrySet = null;
+        modCount++;
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<String, Object>> {
+
+        @Override
+        public int size() {
+            return CompactObjectMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            CompactObjectMap.this.clear();
+        }
+
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+            if (promoted != null) {
+                return promoted.entrySet().iterator();
+            }
+            return new Iterator<Entry<String, Object>>() {
+                private int next;
+                private int last = -1;
+                private int expectedModCount = modCount;
+
+                @Override
+                public boolean hasNext() {
+                    return next < size;
+                }
+
+                @Override
+                public Entry<String, Object> next() {
+                    checkModCount();
+                    if (next >= size) {
+                        throw new NoSuchElementException();
+                    }
+                    last = next++;
+                    return new MemberEntry(last);
+                }
+
+                @Override
+                public void remove() {
+                    if (last == -1) {
+                        throw new IllegalStateException();
+                    }
+                    checkModCount();
+                    removeAt(last);
+                    next = last;
+                    last = -1;
+                    expectedModCount = modCount;
+                }
+
+                private void checkModCount() {
+                    if (modCount != expectedModCount) {
+                        throw new ConcurrentModificationException();
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * A member at a position, which stays valid as long as the keys do not
+     * change.
+     */
+    private final class MemberEntry implements Entry<String, Object> {
+
+        private final int index;
+        private final String key;
+
+        MemberEntry(int index) {
+            this.index = index;
+            this.key = keys[index];
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public Object getValue() {
+            return values[index];
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            Object old = values[index];
+            values[index] = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            Object value = getValue();
+            return key.equals(e.getKey()) && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            Object value = getValue();
+            return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+}
@@ -16,6 +16,8 @@
 
 package io.starburst.openjson;
 
+import java.math.BigDecimal;
+
 class JSON {
     /**
      * Returns the input if it is a JSON-permissible value; throws otherwise.
@@ -83,6 +85,61 @@ class JSON {
         return null;
     }
 
+    /**
+     * Classifies an unquoted literal as null, a boolean, a number or a string.
+     * Numeric values will be returned as an Integer, Long, Double or
+     * BigDecimal, in that order of preference. Tokeners classify literals
+     * with a {@link JSONLiteralScanner}, which only falls back to this for
+     * the rare literals it can't classify itself.
+     */
+    static Object parseLiteral(String literal) {
+        if ("null".equalsIgnoreCase(literal)) {
+            return JSONObject.NULL;
+        } else if ("true".equalsIgnoreCase(literal)) {
+            return Boolean.TRUE;
+        } else if ("false".equalsIgnoreCase(literal)) {
+            return Boolean.FALSE;
+        }
+
+        /* try to parse as an integral type... */
+        if (literal.indexOf('.') == -1) {
+            int base = 10;
+            String number = literal;
+            if (number.startsWith("0x") || number.startsWith("0X")) {
+                number = number.substring(2);
+                base = 16;
+            } else if (number.startsWith("0") && number.length() > 1) {
+                number = number.substring(1);
+                base = 8;
+            }
+            try {
+                long longValue = Long.parseLong(number, base);
+                if (longValue <= Integer.MAX_VALUE && longValue >= Integer.MIN_VALUE) {
+                    return (int) longValue;
+                } else {
+                    return longValue;
+                }
+            } catch (NumberFormatException e) {
+                /*
+                 * This only happens for integral numbers greater than
+                 * Long.MAX_VALUE, numbers in exponential form (5e-10) and
+                 * unquoted strings. Fall through to try floating point.
+                 */
+            }
+        }
+
+        try {
+            BigDecimal asDecimal = new BigDecimal(literal);
+            Double asDouble = Double.valueOf(literal);
+            return asDecimal.compareTo(BigDecimal.valueOf(asDouble)) == 0 ? asDouble : asDecimal;
+        } catch (NumberFormatException ignored) {
+        }
+
+        /* ... finally give up. We have an unquoted string */
+        //noinspection RedundantStringConstructorCall
+        return new String(literal); // a new string avoids leaking memory
+    }
+
     static String toString(Object value) {
         if (value instanceof String) {
             return (String) value;
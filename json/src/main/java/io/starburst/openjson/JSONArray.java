@@ -58,6 +58,14 @@ public class JSONArray {
         values = new ArrayList<Object>();
     }
 
+    /**
+     * Creates a {@code JSONArray} whose values are read from a {@link JSONTape}.
+     */
+    JSONArray(boolean caseInsensitive, TapeArrayList values) {
+        this.caseInsensitive = caseInsensitive;
+        this.values = values;
+    }
+
     /**
      * Creates a new {@code JSONArray} by copying all values from the given
      * collection.
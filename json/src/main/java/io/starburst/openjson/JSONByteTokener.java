@@ -0,0 +1,1136 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.starburst.openjson;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses UTF-8 encoded JSON directly from a byte array, without decoding the
+ * whole input into a {@link String} first. Only the contents of strings,
+ * names and unquoted literals are ever decoded. Example usage: <pre>
+ * JSONByteTokener tokener = new JSONByteTokener(true);
+ * tokener.reset(text.getBytes(), 0, text.getLength());
+ * JSONObject object = (JSONObject) tokener.nextValue();</pre>
+ *
+ * <p>This tokener accepts the same lenient syntax as {@link JSONTokener} and
+ * yields the same values for the same input. All JSON structural characters
+ * are ASCII, and bytes of multi-byte UTF-8 sequences are never mistaken for
+ * them, so the input is scanned byte by byte. Malformed UTF-8 sequences are
+ * replaced with U+FFFD, as {@code Text.toString()} would do.
+ *
+ * <p>Unlike {@link JSONTokener}, an instance may be {@link #reset reset} and
+ * reused for any number of inputs, which is the intended usage when parsing
+ * one record per line. The tokener keeps a reference to the input array and
+ * does not copy it. Instances of this class are not thread safe.
+ */
+public class JSONByteTokener {
+
+    /**
+     * Create case insensitive object keys
+     */
+    private final boolean caseInsensitive;
+
+    /**
+     * The input JSON.
+     */
+    private byte[] in;
+
+    /**
+     * The index of the first byte of the input.
+     */
+    private int offset;
+
+    /**
+     * The index after the last byte of the input.
+     */
+    private int limit;
+
+    /**
+     * The index of the next byte to be read. When the input is exhausted,
+     * this equals {@link #limit}.
+     */
+    private int pos;
+
+    /**
+     * Whether the object started by {@link #beginObject} has no members read
+     * yet.
+     */
+    private boolean objectStart;
+
+    /**
+     * The value of the last number read by {@link #nextLongLiteral}.
+     */
+    private long longValue;
+
+    /**
+     * The value of the last number read by {@link #nextDoubleLiteral}.
+     */
+    private double doubleValue;
+
+    /**
+     * The range of the last number read by {@link #nextNumberLiteral}.
+     */
+    private int numberStart;
+    private int numberEnd;
+
+    /**
+     * Classifies the unquoted literals of the input.
+     */
+    private final JSONLiteralScanner literals = new JSONLiteralScanner();
+
+    /**
+     * The object keys read so far, kept across inputs.
+     */
+    private JSONKeyTable keys;
+
+    /**
+     * Returned by {@link #nextKey} after the last member of an object.
+     */
+    public static final int END_OF_OBJECT = -2;
+
+    /**
+     * Creates a tokener without input. {@link #reset} must be called before
+     * reading values.
+     *
+     * @param caseInsensitive whether parsed objects have case insensitive keys.
+     */
+    public JSONByteTokener(boolean caseInsensitive) {
+        this.caseInsensitive = caseInsensitive;
+    }
+
+    /**
+     * @param caseInsensitive whether parsed objects have case insensitive keys.
+     * @param in     UTF-8 encoded JSON.
+     * @param offset the index of the first byte to parse.
+     * @param length the number of bytes to parse.
+     */
+    public JSONByteTokener(boolean caseInsensitive, byte[] in, int offset, int length) {
+        this(caseInsensitive);
+        reset(in, offset, length);
+    }
+
+    /**
+     * Points this tokener to new input, discarding the current position.
+     *
+     * @param in     UTF-8 encoded JSON.
+     * @param offset the index of the first byte to parse.
+     * @param length the number of bytes to parse.
+     * @return this tokener.
+     */
+    public JSONByteTokener reset(byte[] in, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > in.length) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length
+                    + " out of bounds for " + in.length + " bytes");
+        }
+        // consume an optional byte order mark (BOM) if it exists
+        if (length >= 3 && in[offset] == (byte) 0xEF && in[offset + 1] == (byte) 0xBB
+                && in[offset + 2] == (byte) 0xBF) {
+            offset += 3;
+            length -= 3;
+        }
+        this.in = in;
+        this.offset = offset;
+        this.limit = offset + length;
+        this.pos = offset;
+        return this;
+    }
+
+    /**
+     * Returns the next value from the input.
+     *
+     * @return a {@link JSONObject}, {@link JSONArray}, String, Boolean,
+     * Integer, Long, Double, BigDecimal or {@link JSONObject#NULL}.
+     * @throws JSONException if the input is malformed.
+     */
+    public Object nextValue() throws JSONException {
+        int c = nextCleanInternal();
+        switch (c) {
+            case -1:
+                throw syntaxError("End of input");
+
+            case '{':
+                return readObject(null);
+
+            case '[':
+                return readArray(null);
+
+            case '\'':
+            case '"':
+                return nextString(c);
+
+            default:
+                pos--;
+                return readLiteral();
+        }
+    }
+
+    /**
+     * Returns the next value from the input, materializing only the keys
+     * chosen by {@code selector} if the value is an object. The values of
+     * other keys are checked for syntax errors and skipped. Values that
+     * aren't objects are returned in full.
+     *
+     * @param selector the keys to materialize, or null for all keys.
+     * @return a {@link JSONObject}, {@link JSONArray}, String, Boolean,
+     * Integer, Long, Double, BigDecimal or {@link JSONObject#NULL}.
+     * @throws JSONException if the input is malformed.
+     */
+    public Object nextValue(JSONFieldSelector selector) throws JSONException {
+        if (selector != null && peekClean() == '{') {
+            pos++;
+            return readObject(selector);
+        }
+        return nextValue();
+    }
+
+    /**
+     * Consumes the opening brace '{' of an object whose members are then
+     * read one at a time: {@link #nextKey} returns the key of each member,
+     * and its value must be read with {@link #nextValue}, {@link #skipValue},
+     * {@link #nextLongLiteral} or {@link #nextDoubleLiteral} before asking
+     * for the next key. Only one object can be read this way at a time.
+     *
+     * @throws JSONException if the next value isn't an object.
+     */
+    public void beginObject() throws JSONException {
+        if (nextCleanInternal() != '{') {
+            throw syntaxError("A JSONObject text must begin with '{'");
+        }
+        objectStart = true;
+    }
+
+    /**
+     * Reads the key of the next member of the object started by
+     * {@link #beginObject}, along with the separator that follows it. Keys
+     * found in {@code keys} are only decoded if they contain escape
+     * sequences, or non-ASCII characters in a case insensitive index.
+     *
+     * @param keys the keys to look for.
+     * @return the number of the key in {@code keys},
+     * {@link JSONKeyIndex#NOT_FOUND} if it isn't there, or
+     * {@link #END_OF_OBJECT} if the object has no more members, in which
+     * case its closing brace '}' has been consumed.
+     * @throws JSONException if the input is malformed.
+     */
+    public int nextKey(JSONKeyIndex keys) throws JSONException {
+        if (objectStart) {
+            objectStart = false;
+            int first = nextCleanInternal();
+            if (first == '}') {
+                return END_OF_OBJECT;
+            } else if (first != -1) {
+                pos--;
+            }
+        } else {
+            switch (nextCleanInternal()) {
+                case '}':
+                    return END_OF_OBJECT;
+                case ';':
+                case ',':
+                    break;
+                default:
+                    throw syntaxError("Unterminated object");
+            }
+        }
+
+        String name = null;
+        int id;
+        int start = pos;
+        int end = pos;
+        int quote = nextCleanInternal();
+        if (quote == '"' || quote == '\'') {
+            start = pos;
+            end = skipString(quote);
+            id = keys.get(in, start, end);
+            if (id == JSONKeyIndex.UNDECIDED) {
+                pos = start;
+                name = nextString(quote);
+                id = keys.get(name);
+            }
+        } else {
+            if (quote != -1) {
+                pos--;
+            }
+            name = readName();
+            id = keys.get(name);
+        }
+
+        if (!skipNameSeparator()) {
+            throw syntaxError("Expected ':' after " + (name != null ? name : decode(start, end)));
+        }
+        return id;
+    }
+
+    /**
+     * Consumes the next value if it is a decimal integer literal that fits in
+     * a long, written without a plus sign or leading zeros. Such a literal is
+     * what {@link #nextValue} would return as an Integer or a Long. The value
+     * is then returned by {@link #longValue}.
+     *
+     * @return true if the value was consumed, false if it is of another kind
+     * and must be read some other way.
+     * @throws JSONException if a comment is not terminated.
+     */
+    public boolean nextLongLiteral() throws JSONException {
+        int start = literalStart();
+        if (start == -1) {
+            return false;
+        }
+        int i = start;
+        boolean negative = in[i] == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == limit || in[i] < '0' || in[i] > '9' || (in[i] == '0' && i + 1 < limit
+                && !isLiteralTerminator(in[i + 1]))) {
+            return false;
+        }
+
+        // accumulate negatively, which covers Long.MIN_VALUE
+        long value = 0;
+        for (; i < limit && !isLiteralTerminator(in[i]); i++) {
+            int digit = in[i] - '0';
+            if (digit < 0 || digit > 9 || value < (Long.MIN_VALUE + digit) / 10) {
+                return false;
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative) {
+            if (value == Long.MIN_VALUE) {
+                return false;
+            }
+            value = -value;
+        }
+        longValue = value;
+        pos = i;
+        return true;
+    }
+
+    /**
+     * Returns the value of the number last read by {@link #nextLongLiteral}.
+     *
+     * @return the value of the literal.
+     */
+    public long longValue() {
+        return longValue;
+    }
+
+    /**
+     * Consumes the next value if it is a number in JSON syntax, which
+     * {@link #nextValue} would return as an Integer, Long, Double or
+     * BigDecimal. The value, rounded to the nearest double, is then returned
+     * by {@link #doubleValue}.
+     *
+     * @return true if the value was consumed, false if it is of another kind
+     * and must be read some other way.
+     * @throws JSONException if a comment is not terminated.
+     */
+    public boolean nextDoubleLiteral() throws JSONException {
+        if (nextLongLiteral()) {
+            // the value of the Integer or Long nextValue returns, so "-0" is
+            // 0.0 here rather than the -0.0 of Double.parseDouble
+            doubleValue = longValue;
+            return true;
+        }
+        int start = literalStart();
+        if (start == -1) {
+            return false;
+        }
+        int end = start;
+        while (end < limit && !isLiteralTerminator(in[end])) {
+            end++;
+        }
+        if (!isNumber(start, end)) {
+            return false;
+        }
+        doubleValue = literals.parseDouble(in, start, end);
+        pos = end;
+        return true;
+    }
+
+    /**
+     * Returns the value of the number last read by {@link #nextDoubleLiteral}.
+     *
+     * @return the value of the literal.
+     */
+    public double doubleValue() {
+        return doubleValue;
+    }
+
+    /**
+     * Consumes the next value if it is a number in JSON syntax, like
+     * {@link #nextDoubleLiteral}, without converting it. Its text is then
+     * found in the input at {@link #numberOffset} and {@link #numberLength},
+     * for numbers to be read exactly, such as decimals.
+     *
+     * @return true if the value was consumed, false if it is of another kind
+     * and must be read some other way.
+     * @throws JSONException if a comment is not terminated.
+     */
+    public boolean nextNumberLiteral() throws JSONException {
+        int start = literalStart();
+        if (start == -1) {
+            return false;
+        }
+        int end = start;
+        while (end < limit && !isLiteralTerminator(in[end])) {
+            end++;
+        }
+        if (!isNumber(start, end)) {
+            return false;
+        }
+        numberStart = start;
+        numberEnd = end;
+        pos = end;
+        return true;
+    }
+
+    /**
+     * Returns the input being read, which holds the number last read by
+     * {@link #nextNumberLiteral}.
+     *
+     * @return the UTF-8 encoded input.
+     */
+    public byte[] input() {
+        return in;
+    }
+
+    /**
+     * Returns the index in {@link #input} of the number last read by
+     * {@link #nextNumberLiteral}.
+     *
+     * @return the index of the first byte of the literal.
+     */
+    public int numberOffset() {
+        return numberStart;
+    }
+
+    /**
+     * Returns the length of the number last read by {@link #nextNumberLiteral}.
+     *
+     * @return the number of bytes of the literal.
+     */
+    public int numberLength() {
+        return numberEnd - numberStart;
+    }
+
+    /**
+     * Skips whitespace and comments up to the next value.
+     *
+     * @return the index of the next value if it may be a number, or -1.
+     */
+    private int literalStart() throws JSONException {
+        int c = peekClean();
+        return c == '-' || (c >= '0' && c <= '9') ? pos : -1;
+    }
+
+    /**
+     * Returns true if the bytes in the range are a number as defined by the
+     * JSON grammar: an optional minus sign, an integer without leading zeros,
+     * an optional fraction and an optional exponent.
+     */
+    private boolean isNumber(int start, int end) {
+        int i = start;
+        if (i < end && in[i] == '-') {
+            i++;
+        }
+        int digits = skipDigits(i, end);
+        if (digits == i || (in[i] == '0' && digits > i + 1)) {
+            return false;
+        }
+        i = digits;
+        if (i < end && in[i] == '.') {
+            digits = skipDigits(i + 1, end);
+            if (digits == i + 1) {
+                return false;
+            }
+            i = digits;
+        }
+        if (i < end && (in[i] == 'e' || in[i] == 'E')) {
+            i++;
+            if (i < end && (in[i] == '+' || in[i] == '-')) {
+                i++;
+            }
+            digits = skipDigits(i, end);
+            if (digits == i) {
+                return false;
+            }
+            i = digits;
+        }
+        return i == end;
+    }
+
+    private int skipDigits(int i, int end) {
+        while (i < end && in[i] >= '0' && in[i] <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns true until the input has been exhausted.
+     *
+     * @return true if more input exists.
+     */
+    public boolean more() {
+        return pos < limit;
+    }
+
+    /**
+     * Returns the next byte that is not whitespace and does not belong to a
+     * comment, without consuming it.
+     *
+     * @return the next significant byte as an unsigned value, or -1 if the
+     * input is exhausted.
+     * @throws JSONException if a comment is not terminated.
+     */
+    public int peekClean() throws JSONException {
+        int c = nextCleanInternal();
+        if (c != -1) {
+            pos--;
+        }
+        return c;
+    }
+
+    private int nextCleanInternal() throws JSONException {
+        while (pos < limit) {
+            int c = in[pos++] & 0xFF;
+            switch (c) {
+                case '\t':
+                case ' ':
+                case '\n':
+                case '\r':
+                    continue;
+
+                case '/':
+                    if (pos == limit) {
+                        return c;
+                    }
+
+                    switch (in[pos]) {
+                        case '*':
+                            // skip a /* c-style comment */
+                            pos++;
+                            int commentEnd = indexOfCommentEnd(pos);
+                            if (commentEnd == -1) {
+                                throw syntaxError("Unterminated comment");
+                            }
+                            pos = commentEnd + 2;
+                            continue;
+
+                        case '/':
+                            // skip a // end-of-line comment
+                            pos++;
+                            skipToEndOfLine();
+                            continue;
+
+                        default:
+                            return c;
+                    }
+
+                case '#':
+                    // skip a # hash end-of-line comment, see JSONTokener
+                    skipToEndOfLine();
+                    continue;
+
+                default:
+                    return c;
+            }
+        }
+
+        return -1;
+    }
+
+    private int indexOfCommentEnd(int from) {
+        for (int i = from; i + 1 < limit; i++) {
+            if (in[i] == '*' && in[i + 1] == '/') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Advances the position until after the next newline character. If the line
+     * is terminated by "\r\n", the '\n' must be consumed as whitespace by the
+     * caller.
+     */
+    private void skipToEndOfLine() {
+        for (; pos < limit; pos++) {
+            byte c = in[pos];
+            if (c == '\r' || c == '\n') {
+                pos++;
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the string up to but not including {@code quote}, unescaping any
+     * character escape sequences encountered along the way. The opening quote
+     * should have already been read. This consumes the closing quote, but does
+     * not include it in the returned string.
+     *
+     * @param quote either ' or ".
+     * @return The unescaped string.
+     * @throws JSONException if the string isn't terminated by a closing quote correctly.
+     */
+    public String nextString(char quote) throws JSONException {
+        return nextString((int) quote);
+    }
+
+    private String nextString(int quote) throws JSONException {
+        /*
+         * For strings that are free of escape sequences, we can just decode
+         * the bytes in place. But if we encounter an escape sequence, we need
+         * to use a StringBuilder to compose the result.
+         */
+        StringBuilder builder = null;
+
+        /* the index of the first byte not yet appended to the builder. */
+        int start = pos;
+
+        while (pos < limit) {
+            int c = in[pos++];
+            if (c == quote) {
+                if (builder == null) {
+                    return decode(start, pos - 1);
+                } else {
+                    builder.append(decode(start, pos - 1));
+                    return builder.toString();
+                }
+            }
+
+            if (c == '\\') {
+                if (pos == limit) {
+                    throw syntaxError("Unterminated escape sequence");
+                }
+                if (builder == null) {
+                    builder = new StringBuilder();
+                }
+                builder.append(decode(start, pos - 1));
+                readEscapeCharacter(builder);
+                start = pos;
+            }
+        }
+
+        throw syntaxError("Unterminated string");
+    }
+
+    /**
+     * Unescapes the character identified by the character or characters that
+     * immediately follow a backslash and appends it to {@code builder}. The
+     * backslash '\' should have already been read.
+     */
+    private void readEscapeCharacter(StringBuilder builder) throws JSONException {
+        int escaped = in[pos++] & 0xFF;
+        switch (escaped) {
+            case 'u':
+                if (pos + 4 > limit) {
+                    throw syntaxError("Unterminated escape sequence");
+                }
+                int value = 0;
+                for (int i = pos; i < pos + 4; i++) {
+                    int digit = JSONTokener.dehexchar((char) (in[i] & 0xFF));
+                    if (digit == -1) {
+                        value = parseHexSlow(pos);
+                        break;
+                    }
+                    value = (value << 4) | digit;
+                }
+                pos += 4;
+                builder.append((char) value);
+                return;
+
+            case 't':
+                builder.append('\t');
+                return;
+
+            case 'b':
+                builder.append('\b');
+                return;
+
+            case 'n':
+                builder.append('\n');
+                return;
+
+            case 'r':
+                builder.append('\r');
+                return;
+
+            case 'f':
+                builder.append('\f');
+                return;
+
+            case 'a':
+                builder.append('\007');
+                return;
+
+            case 'v':
+                builder.append('\011');
+                return;
+
+            default:
+                if (escaped < 0x80) {
+                    builder.append((char) escaped);
+                } else {
+                    // an escaped non-ASCII character stands for itself
+                    int start = pos - 1;
+                    pos = Math.min(limit, start + utf8SequenceLength(escaped));
+                    builder.append(decode(start, pos));
+                }
+        }
+    }
+
+    /**
+     * Parses the four bytes at {@code from} the way {@link JSONTokener} does,
+     * for escapes that aren't made of plain hex digits.
+     */
+    private int parseHexSlow(int from) throws JSONException {
+        String hex = decode(from, from + 4);
+        try {
+            return Integer.parseInt(hex, 16);
+        } catch (NumberFormatException nfe) {
+            throw syntaxError("Invalid escape sequence: " + hex);
+        }
+    }
+
+    private static int utf8SequenceLength(int leadByte) {
+        if (leadByte >= 0xF0) {
+            return 4;
+        } else if (leadByte >= 0xE0) {
+            return 3;
+        } else if (leadByte >= 0xC0) {
+            return 2;
+        }
+        return 1;
+    }
+
+    /**
+     * Reads a null, boolean, numeric or unquoted string literal value. Numeric
+     * values will be returned as an Integer, Long, or Double, in that order of
+     * preference.
+     */
+    private Object readLiteral() throws JSONException {
+        int start = pos;
+        while (pos < limit && !isLiteralTerminator(in[pos])) {
+            pos++;
+        }
+
+        if (pos == start) {
+            throw syntaxError("Expected literal value");
+        }
+        return literals.parse(in, start, pos);
+    }
+
+    /**
+     * Returns true for the characters that end an unquoted literal, the same
+     * ones {@link JSONTokener} stops at.
+     */
+    private static boolean isLiteralTerminator(byte c) {
+        switch (c) {
+            case '{':
+            case '}':
+            case '[':
+            case ']':
+            case '/':
+            case '\\':
+            case ':':
+            case ',':
+            case '=':
+            case ';':
+            case '#':
+            case ' ':
+            case '\t':
+            case '\f':
+            case '\r':
+            case '\n':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Reads a sequence of key/value pairs and the trailing closing brace '}' of
+     * an object. The opening brace '{' should have already been read.
+     *
+     * @param selector the keys to materialize, or null for all keys.
+     */
+    private JSONObject readObject(JSONFieldSelector selector) throws JSONException {
+        JSONObject result = new JSONObject(caseInsensitive);
+
+        /* Peek to see if this is the empty object. */
+        int first = nextCleanInternal();
+        if (first == '}') {
+            return result;
+        } else if (first != -1) {
+            pos--;
+        }
+
+        while (true) {
+            String name;
+            String lowerName = null;
+            JSONFieldSelector selected = JSONFieldSelector.ALL;
+            int quote = nextCleanInternal();
+            if (quote == '"' || quote == '\'') {
+                /* match the raw key first, and only decode the keys we keep. */
+                int start = pos;
+                int end = skipString(quote);
+                Object match = selector == null ? JSONFieldSelector.ALL : selector.lookup(in, start, end);
+                if (match == JSONFieldSelector.UNDECIDED) {
+                    pos = start;
+                    name = nextString(quote);
+                    selected = selector.lookup(name);
+                } else if (match == null) {
+                    name = null;
+                    selected = null;
+                } else {
+                    name = keys().get(in, start, end);
+                    if (name == null) {
+                        // escape sequences
+                        pos = start;
+                        name = nextString(quote);
+                    } else {
+                        lowerName = keys.lowerKey();
+                    }
+                    selected = (JSONFieldSelector) match;
+                }
+            } else {
+                if (quote != -1) {
+                    pos--;
+                }
+                name = readName();
+                if (selector != null) {
+                    selected = selector.lookup(name);
+                }
+            }
+
+            readNameSeparator(name);
+
+            if (selected == null) {
+                skipValue();
+            } else if (selected == JSONFieldSelector.ALL) {
+                result.put(name, lowerName, nextValue());
+            } else {
+                result.put(name, lowerName, nextNestedValue(selected));
+            }
+
+            switch (nextCleanInternal()) {
+                case '}':
+                    return result;
+                case ';':
+                case ',':
+                    continue;
+                default:
+                    throw syntaxError("Unterminated object");
+            }
+        }
+    }
+
+    /**
+     * Reads a value, applying a nested selector to it if it is an object, or
+     * to its objects if it is an array and the selector is for array elements.
+     */
+    private Object nextNestedValue(JSONFieldSelector selector) throws JSONException {
+        switch (peekClean()) {
+            case '{':
+                pos++;
+                return readObject(selector);
+            case '[':
+                if (!selector.isArrayElements()) {
+                    return nextValue();
+                }
+                pos++;
+                return readArray(selector);
+            default:
+                return nextValue();
+        }
+    }
+
+    /**
+     * Returns the keys read so far, creating the table on first use.
+     */
+    private JSONKeyTable keys() {
+        if (keys == null) {
+            keys = new JSONKeyTable(caseInsensitive);
+        }
+        return keys;
+    }
+
+    /**
+     * Reads an object key, which must be a string.
+     */
+    private String readName() throws JSONException {
+        Object name = nextValue();
+        if (!(name instanceof String)) {
+            if (name == null) {
+                throw syntaxError("Names cannot be null");
+            } else {
+                throw syntaxError("Names must be strings, but " + name
+                        + " is of type " + name.getClass().getName());
+            }
+        }
+        return (String) name;
+    }
+
+    /**
+     * Expect the name/value separator to be either a colon ':', an equals sign
+     * '=', or an arrow "=>". The last two are bogus but we include them
+     * because that's what the original implementation did.
+     */
+    private void readNameSeparator(String name) throws JSONException {
+        if (!skipNameSeparator()) {
+            throw syntaxError("Expected ':' after " + name);
+        }
+    }
+
+    /**
+     * Consumes the name/value separator, see {@link #readNameSeparator}.
+     *
+     * @return false if the next character isn't a separator.
+     */
+    private boolean skipNameSeparator() throws JSONException {
+        int separator = nextCleanInternal();
+        if (separator != ':' && separator != '=') {
+            return false;
+        }
+        if (pos < limit && in[pos] == '>') {
+            pos++;
+        }
+        return true;
+    }
+
+    /**
+     * Reads a sequence of values and the trailing closing brace ']' of an
+     * array. The opening brace '[' should have already been read. Note that
+     * "[]" yields an empty array, but "[,]" returns a two-element array
+     * equivalent to "[null,null]".
+     *
+     * @param selector the keys to materialize in the objects of the array, or
+     *                 null for all keys.
+     */
+    private JSONArray readArray(JSONFieldSelector selector) throws JSONException {
+        JSONArray result = new JSONArray(caseInsensitive);
+
+        /* to cover input that ends with ",]". */
+        boolean hasTrailingSeparator = false;
+
+        while (true) {
+            switch (nextCleanInternal()) {
+                case -1:
+                    throw syntaxError("Unterminated array");
+                case ']':
+                    if (hasTrailingSeparator) {
+                        result.put((Object) null);
+                    }
+                    return result;
+                case ',':
+                case ';':
+                    /* A separator without a value first means "null". */
+                    result.put((Object) null);
+                    hasTrailingSeparator = true;
+                    continue;
+                default:
+                    pos--;
+            }
+
+            if (selector != null && in[pos] == '{') {
+                pos++;
+                result.put(readObject(selector));
+            } else {
+                result.put(nextValue());
+            }
+
+            switch (nextCleanInternal()) {
+                case ']':
+                    return result;
+                case ',':
+                case ';':
+                    hasTrailingSeparator = true;
+                    continue;
+                default:
+                    throw syntaxError("Unterminated array");
+            }
+        }
+    }
+
+    /**
+     * Consumes the next value from the input without materializing it. The
+     * value is checked for the same syntax errors {@link #nextValue} reports.
+     *
+     * @throws JSONException if the input is malformed.
+     */
+    public void skipValue() throws JSONException {
+        int c = nextCleanInternal();
+        switch (c) {
+            case -1:
+                throw syntaxError("End of input");
+
+            case '{':
+                skipObject();
+                return;
+
+            case '[':
+                skipArray();
+                return;
+
+            case '\'':
+            case '"':
+                skipString(c);
+                return;
+
+            default:
+                pos--;
+                int start = pos;
+                while (pos < limit && !isLiteralTerminator(in[pos])) {
+                    pos++;
+                }
+                if (pos == start) {
+                    throw syntaxError("Expected literal value");
+                }
+        }
+    }
+
+    /**
+     * Consumes a string up to and including the closing {@code quote}. The
+     * opening quote should have already been read.
+     *
+     * @return the index of the closing quote.
+     */
+    private int skipString(int quote) throws JSONException {
+        while (pos < limit) {
+            int c = in[pos++];
+            if (c == quote) {
+                return pos - 1;
+            }
+
+            if (c == '\\') {
+                if (pos == limit) {
+                    throw syntaxError("Unterminated escape sequence");
+                }
+                if (in[pos++] == 'u') {
+                    if (pos + 4 > limit) {
+                        throw syntaxError("Unterminated escape sequence");
+                    }
+                    for (int i = pos; i < pos + 4; i++) {
+                        if (JSONTokener.dehexchar((char) (in[i] & 0xFF)) == -1) {
+                            parseHexSlow(pos);
+                            break;
+                        }
+                    }
+                    pos += 4;
+                }
+            }
+        }
+
+        throw syntaxError("Unterminated string");
+    }
+
+    /**
+     * Consumes the members of an object and its closing brace '}', mirroring
+     * {@link #readObject}. The opening brace '{' should have already been read.
+     */
+    private void skipObject() throws JSONException {
+        int first = nextCleanInternal();
+        if (first == '}') {
+            return;
+        } else if (first != -1) {
+            pos--;
+        }
+
+        while (true) {
+            int quote = nextCleanInternal();
+            String name = null;
+            if (quote == '"' || quote == '\'') {
+                skipString(quote);
+            } else {
+                if (quote != -1) {
+                    pos--;
+                }
+                name = readName();
+            }
+
+            readNameSeparator(name);
+            skipValue();
+
+            switch (nextCleanInternal()) {
+                case '}':
+                    return;
+                case ';':
+                case ',':
+                    continue;
+                default:
+                    throw syntaxError("Unterminated object");
+            }
+        }
+    }
+
+    /**
+     * Consumes the values of an array and its closing bracket ']', mirroring
+     * {@link #readArray}. The opening bracket '[' should have already been read.
+     */
+    private void skipArray() throws JSONException {
+        while (true) {
+            switch (nextCleanInternal()) {
+                case -1:
+                    throw syntaxError("Unterminated array");
+                case ']':
+                    return;
+                case ',':
+                case ';':
+                    continue;
+                default:
+                    pos--;
+            }
+
+            skipValue();
+
+            switch (nextCleanInternal()) {
+                case ']':
+                    return;
+                case ',':
+                case ';':
+                    continue;
+                default:
+                    throw syntaxError("Unterminated array");
+            }
+        }
+    }
+
+    private String decode(int start, int end) {
+        return new String(in, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns an exception containing the given message plus the current
+     * position and the entire input.
+     *
+     * @param message The message we want to include.
+     * @return An exception that we can throw.
+     */
+    public JSONException syntaxError(String message) {
+        return new JSONException(message + this);
+    }
+
+    /**
+     * Returns the current position and the entire input, decoded.
+     */
+    @Override
+    public String toString() {
+        return " at character " + (pos - offset) + " of "
+                + (in == null ? null : decode(offset, limit));
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.starburst.openjson;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The set of object keys a {@link JSONByteTokener} should materialize. The
+ * values of all other keys are skipped over without building strings, maps
+ * or nested objects for them. Example usage: <pre>
+ * JSONFieldSelector selector = new JSONFieldSelector(true, false)
+ *         .select("id")
+ *         .select("name");
+ * JSONObject partial = (JSONObject) tokener.nextValue(selector);</pre>
+ *
+ * <p>A key may be given a nested selector, in which case only the chosen
+ * keys of its object value are materialized in turn. Example usage: <pre>
+ * JSONFieldSelector user = new JSONFieldSelector(true, false).select("id");
+ * JSONFieldSelector selector = new JSONFieldSelector(true, false)
+ *         .select("user", user);</pre>
+ * Nested selectors only apply to object values, other values are
+ * materialized in full. A selector created for array elements applies to
+ * the objects of an array value instead.
+ *
+ * <p>Keys are matched the way a {@link JSONObject} looks them up: ignoring
+ * case when the selector is case insensitive, using the default locale at
+ * the time the selector is created.
+ * When {@code dotsAsUnderscores} is set, a key also matches if it does once
+ * its dots are replaced with underscores. Matching may keep a few more keys
+ * than strictly necessary, for instance when a key is written with escape
+ * sequences, but never fewer.
+ *
+ * <p>A selector must not be modified once it is handed to a tokener. After
+ * that, it may be shared among threads.
+ */
+public class JSONFieldSelector {
+
+    /**
+     * Returned by the byte lookup when the key must be decoded to decide.
+     */
+    static final Object UNDECIDED = new Object();
+
+    /**
+     * Marks keys whose values are materialized in full.
+     */
+    static final JSONFieldSelector ALL = new JSONFieldSelector(false, false);
+
+    private final boolean caseInsensitive;
+    private final boolean dotsAsUnderscores;
+    private final boolean arrayElements;
+
+    /**
+     * The locale case insensitive selectors use to compare keys.
+     */
+    private final Locale locale = Locale.getDefault();
+
+    /**
+     * Whether ASCII keys can be compared ignoring case without converting
+     * them with {@link #locale}.
+     */
+    private final boolean asciiFolding = "I".toLowerCase(locale).equals("i");
+
+    /**
+     * Normalized keys mapped to the selector for their value.
+     */
+    private final Map<String, JSONFieldSelector> fields = new HashMap<String, JSONFieldSelector>();
+
+    /**
+     * Whether all normalized keys are ASCII, so that case insensitive keys
+     * can be compared without decoding them.
+     */
+    private boolean asciiKeys = true;
+
+    /*
+     * Open addressing table over the UTF-8 bytes of the normalized keys,
+     * rebuilt whenever a key is added.
+     */
+    private byte[][] tableKeys = new byte[0][];
+    private int[] tableHashes = new int[0];
+    private JSONFieldSelector[] tableValues = new JSONFieldSelector[0];
+
+    /**
+     * @param caseInsensitive   whether keys are matched ignoring case.
+     * @param dotsAsUnderscores whether a key also matches after replacing its
+     *                          dots with underscores.
+     */
+    public JSONFieldSelector(boolean caseInsensitive, boolean dotsAsUnderscores) {
+        this(caseInsensitive, dotsAsUnderscores, false);
+    }
+
+    /**
+     * @param caseInsensitive   whether keys are matched ignoring case.
+     * @param dotsAsUnderscores whether a key also matches after replacing its
+     *                          dots with underscores.
+     * @param arrayElements     whether, as a nested selector, this applies to
+     *                          the objects in an array value rather than to an
+     *                          object value.
+     */
+    public JSONFieldSelector(boolean caseInsensitive, boolean dotsAsUnderscores, boolean arrayElements) {
+        this.caseInsensitive = caseInsensitive;
+        this.dotsAsUnderscores = dotsAsUnderscores;
+        this.arrayElements = arrayElements;
+    }
+
+    /**
+     * Selects the value of {@code key} in full.
+     *
+     * @param key the key as written in JSON, or as a Hive field name when
+     *            dots are replaced with underscores.
+     * @return this selector.
+     */
+    public JSONFieldSelector select(String key) {
+        return select(key, null);
+    }
+
+    /**
+     * Selects the value of {@code key}, materializing only what {@code nested}
+     * selects of it. A key selected in full stays selected in full.
+     *
+     * @param key    the key as written in JSON, or as a Hive field name when
+     *               dots are replaced with underscores.
+     * @param nested the keys to materialize in the value, or null for all.
+     * @return this selector.
+     */
+    public JSONFieldSelector select(String key, JSONFieldSelector nested) {
+        String normalized = normalize(key);
+        if (fields.get(normalized) != ALL) {
+            fields.put(normalized, nested == null ? ALL : nested);
+            rebuildTable();
+        }
+        return this;
+    }
+
+    /**
+     * Returns true if this selector applies to the objects in an array value.
+     *
+     * @return whether this selector is for array elements.
+     */
+    public boolean isArrayElements() {
+        return arrayElements;
+    }
+
+    /**
+     * Returns true if no key is selected, meaning that every value of an
+     * object is skipped.
+     *
+     * @return whether no key is selected.
+     */
+    public boolean isEmpty() {
+        return fields.isEmpty();
+    }
+
+    /**
+     * Looks up a decoded key.
+     *
+     * @return the selector for the value, or null if the value is skipped.
+     */
+    JSONFieldSelector lookup(String key) {
+        String normalized = normalize(key);
+        JSONFieldSelector selected = fields.get(normalized);
+        if (selected == null && dotsAsUnderscores && normalized.indexOf('.') != -1) {
+            selected = fields.get(normalized.replace('.', '_'));
+        }
+        return selected;
+    }
+
+    /**
+     * Looks up the raw bytes of a quoted key, without the quotes.
+     *
+     * @return the selector for the value, null if the value is skipped, or
+     * {@link #UNDECIDED} if the key has to be decoded and passed to
+     * {@link #lookup(String)}.
+     */
+    Object lookup(byte[] in, int start, int end) {
+        if (fields.isEmpty()) {
+            return null;
+        }
+        if (caseInsensitive && (!asciiKeys || !asciiFolding)) {
+            return UNDECIDED;
+        }
+
+        int hash = 0;
+        int dottedHash = 0;
+        boolean hasDots = false;
+        for (int i = start; i < end; i++) {
+            int c = in[i] & 0xFF;
+            if (c == '\\' || (caseInsensitive && c >= 0x80)) {
+                return UNDECIDED;
+            }
+            c = fold(c);
+            hash = 31 * hash + c;
+            if (c == '.') {
+                hasDots = true;
+                c = '_';
+            }
+            dottedHash = 31 * dottedHash + c;
+        }
+
+        JSONFieldSelector selected = find(hash, in, start, end, false);
+        if (selected == null && dotsAsUnderscores && hasDots) {
+            selected = find(dottedHash, in, start, end, true);
+        }
+        return selected;
+    }
+
+    private JSONFieldSelector find(int hash, byte[] in, int start, int end, boolean dotsAsUnderscores) {
+        int mask = tableKeys.length - 1;
+        for (int slot = mix(hash) & mask; tableKeys[slot] != null; slot = (slot + 1) & mask) {
+            if (tableHashes[slot] == hash && equals(tableKeys[slot], in, start, end, dotsAsUnderscores)) {
+                return tableValues[slot];
+            }
+        }
+        return null;
+    }
+
+    private boolean equals(byte[] key, byte[] in, int start, int end, boolean dotsAsUnderscores) {
+        if (key.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            int c = fold(in[start + i] & 0xFF);
+            if (dotsAsUnderscores && c == '.') {
+                c = '_';
+            }
+            if (c != (key[i] & 0xFF)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int fold(int c) {
+        return caseInsensitive && c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    private String normalize(String key) {
+        return caseInsensitive ? key.toLowerCase(locale) : key;
+    }
+
+    private void rebuildTable() {
+        int capacity = Integer.highestOneBit(Math.max(fields.size(), 1) * 4);
+        tableKeys = new byte[capacity][];
+        tableHashes = new int[capacity];
+        tableValues = new JSONFieldSelector[capacity];
+        asciiKeys = true;
+
+        for (Map.Entry<String, JSONFieldSelector> entry : fields.entrySet()) {
+            byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            int hash = 0;
+            for (byte b : key) {
+                if (b < 0) {
+                    asciiKeys = false;
+                }
+                hash = 31 * hash + (b & 0xFF);
+            }
+            int slot = mix(hash) & (capacity - 1);
+            while (tableKeys[slot] != null) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            tableKeys[slot] = key;
+            tableHashes[slot] = hash;
+            tableValues[slot] = entry.getValue();
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.starburst.openjson;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A fixed set of object keys, each mapped to a number, that a
+ * {@link JSONByteTokener} matches against the raw bytes of the keys it reads.
+ * Example usage: <pre>
+ * JSONKeyIndex keys = new JSONKeyIndex(true).put("id", 0).put("name", 1);
+ * tokener.beginObject();
+ * for (int key; (key = tokener.nextKey(keys)) != JSONByteTokener.END_OF_OBJECT; ) {
+ *     if (key == JSONKeyIndex.NOT_FOUND) {
+ *         tokener.skipValue();
+ *     } else {
+ *         values[key] = tokener.nextValue();
+ *     }
+ * }</pre>
+ *
+ * <p>Keys are matched exactly the way a {@link JSONObject} looks them up:
+ * ignoring case when the index is case insensitive, using the default locale.
+ * Plain ASCII keys are matched without being decoded.
+ *
+ * <p>An index must not be modified once it is handed to a tokener. After
+ * that, it may be shared among threads.
+ */
+public class JSONKeyIndex {
+
+    /**
+     * Returned for keys that are not in the index.
+     */
+    public static final int NOT_FOUND = -1;
+
+    /**
+     * Returned by the byte lookup when the key must be decoded to decide.
+     */
+    static final int UNDECIDED = -2;
+
+    private final boolean caseInsensitive;
+
+    /**
+     * The locale case insensitive objects use to compare keys.
+     */
+    private final Locale locale = Locale.getDefault();
+
+    /**
+     * Whether ASCII keys can be compared ignoring case without converting
+     * them with {@link #locale}.
+     */
+    private final boolean asciiFolding = "I".toLowerCase(locale).equals("i");
+
+    /**
+     * Normalized keys mapped to their number.
+     */
+    private final Map<String, Integer> ids = new HashMap<String, Integer>();
+
+    /*
+     * Open addressing table over the UTF-8 bytes of the normalized keys,
+     * rebuilt whenever a key is added.
+     */
+    private byte[][] tableKeys = new byte[1][];
+    private int[] tableHashes = new int[1];
+    private int[] tableIds = new int[1];
+
+    /**
+     * @param caseInsensitive whether keys are matched ignoring case.
+     */
+    public JSONKeyIndex(boolean caseInsensitive) {
+        this.caseInsensitive = caseInsensitive;
+    }
+
+    /**
+     * Adds a key, or changes the number of a key already in the index.
+     *
+     * @param key the key as written in JSON.
+     * @param id  a number that is not negative.
+     * @return this index.
+     */
+    public JSONKeyIndex put(String key, int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Negative id " + id + " for key " + key);
+        }
+        ids.put(normalize(key), id);
+        rebuildTable();
+        return this;
+    }
+
+    /**
+     * Looks up a decoded key.
+     *
+     * @param key the key to look up.
+     * @return the number of the key, or {@link #NOT_FOUND}.
+     */
+    public int get(String key) {
+        Integer id = ids.get(normalize(key));
+        return id == null ? NOT_FOUND : id;
+    }
+
+    /**
+     * Variant of {@link #get(String)} for a key whose lower case form,
+     * converted with the default locale, may already be known.
+     *
+     * @param lowerKey {@code key} in lower case, or null if unknown.
+     */
+    int get(String key, String lowerKey) {
+        if (caseInsensitive && lowerKey != null) {
+            Integer id = ids.get(lowerKey);
+            return id == null ? NOT_FOUND : id;
+        }
+        return get(key);
+    }
+
+    /**
+     * Looks up the raw bytes of a quoted key, without the quotes.
+     *
+     * @return the number of the key, {@link #NOT_FOUND}, or {@link #UNDECIDED}
+     * if the key has to be decoded and passed to {@link #get(String)}.
+     */
+    int get(byte[] in, int start, int end) {
+        if (ids.isEmpty()) {
+            return NOT_FOUND;
+        }
+        boolean fold = caseInsensitive;
+        if (fold && !asciiFolding) {
+            return UNDECIDED;
+        }
+
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            int c = in[i] & 0xFF;
+            if (c == '\\' || (fold && c >= 0x80)) {
+                return UNDECIDED;
+            }
+            hash = 31 * hash + (fold ? foldAscii(c) : c);
+        }
+
+        int mask = tableKeys.length - 1;
+        for (int slot = mix(hash) & mask; tableKeys[slot] != null; slot = (slot + 1) & mask) {
+            if (tableHashes[slot] == hash && equals(tableKeys[slot], in, start, end)) {
+                return tableIds[slot];
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private boolean equals(byte[] key, byte[] in, int start, int end) {
+        if (key.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            int c = in[start + i] & 0xFF;
+            if ((caseInsensitive ? foldAscii(c) : c) != (key[i] & 0xFF)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int foldAscii(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    private String normalize(String key) {
+        return caseInsensitive ? key.toLowerCase(locale) : key;
+    }
+
+    private void rebuildTable() {
+        int capacity = Integer.highestOneBit(Math.max(ids.size(), 1) * 4);
+        tableKeys = new byte[capacity][];
+        tableHashes = new int[capacity];
+        tableIds = new int[capacity];
+
+        for (Map.Entry<String, Integer> entry : ids.entrySet()) {
+            byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            int hash = 0;
+            for (byte b : key) {
+                hash = 31 * hash + (b & 0xFF);
+            }
+            int slot = mix(hash) & (capacity - 1);
+            while (tableKeys[slot] != null) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            tableKeys[slot] = key;
+            tableHashes[slot] = hash;
+            tableIds[slot] = entry.getValue();
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
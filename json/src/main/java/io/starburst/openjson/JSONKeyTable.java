@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.starburst.openjson;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Remembers the object keys a {@link JSONByteTokener} has decoded, so that
+ * the same keys read again, as they are in every row of line delimited JSON,
+ * yield the same String without being decoded, and, for case insensitive
+ * objects, without being converted to lower case again.
+ *
+ * <p>The table is bounded: each key has one slot, picked by the hash of its
+ * raw bytes, and a key read into an occupied slot replaces the key there.
+ * Long keys and keys with escape sequences are not remembered.
+ */
+final class JSONKeyTable {
+
+    private static final int CAPACITY = 1024;
+
+    /**
+     * Longer keys are decoded each time they are read.
+     */
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private final boolean caseInsensitive;
+
+    /**
+     * The locale the remembered keys were converted to lower case with.
+     */
+    private Locale locale = Locale.getDefault();
+
+    private final byte[][] bytes = new byte[CAPACITY][];
+    private final int[] hashes = new int[CAPACITY];
+    private final String[] keys = new String[CAPACITY];
+    private final String[] lowerKeys = new String[CAPACITY];
+
+    /**
+     * The lower case form of the key last returned by {@link #get}.
+     */
+    private String lowerKey;
+
+    /**
+     * @param caseInsensitive whether keys are needed in lower case as well.
+     */
+    JSONKeyTable(boolean caseInsensitive) {
+        this.caseInsensitive = caseInsensitive;
+    }
+
+    /**
+     * Returns the key whose UTF-8 bytes, without the quotes, are in the given
+     * range of {@code in}.
+     *
+     * @return the decoded key, or null if it has escape sequences and must be
+     * read as a string.
+     */
+    String get(byte[] in, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            int c = in[i];
+            if (c == '\\') {
+                return null;
+            }
+            hash = 31 * hash + c;
+        }
+
+        int length = end - start;
+        if (length > MAX_KEY_LENGTH) {
+            lowerKey = null;
+            return new String(in, start, length, StandardCharsets.UTF_8);
+        }
+        if (caseInsensitive && locale != Locale.getDefault()) {
+            clear();
+        }
+
+        int slot = (hash ^ (hash >>> 16)) & (CAPACITY - 1);
+        byte[] key = bytes[slot];
+        if (key == null || hashes[slot] != hash || !equals(key, in, start, end)) {
+            key = new byte[length];
+            System.arraycopy(in, start, key, 0, length);
+            bytes[slot] = key;
+            hashes[slot] = hash;
+            keys[slot] = new String(key, StandardCharsets.UTF_8);
+            lowerKeys[slot] = caseInsensitive ? keys[slot].toLowerCase(locale) : null;
+        }
+        lowerKey = lowerKeys[slot];
+        return keys[slot];
+    }
+
+    /**
+     * Returns the key last returned by {@link #get} in lower case, converted
+     * with the default locale, or null if unknown.
+     */
+    String lowerKey() {
+        return lowerKey;
+    }
+
+    private static boolean equals(byte[] key, byte[] in, int start, int end) {
+        if (key.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != in[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void clear() {
+        locale = Locale.getDefault();
+        for (int i = 0; i < CAPACITY; i++) {
+            bytes[i] = null;
+            keys[i] = null;
+            lowerKeys[i] = null;
+        }
+    }
+}
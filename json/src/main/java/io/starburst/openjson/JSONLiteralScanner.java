@@ -0,0 +1,318 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.starburst.openjson;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Classifies unquoted literals in a single pass over their characters,
+ * giving the same values as {@link JSON#parseLiteral} without taking them
+ * apart into substrings or trying parsers until one doesn't throw.
+ *
+ * <p>Keywords, decimal integers that fit in a long and decimal numbers below
+ * 2^53 with at most 15 significant digits and a small exponent are built
+ * directly from the digits. A double always holds such a number exactly as
+ * written, so it is returned as a Double, just as {@link JSON#parseLiteral}
+ * would find. Octal and hexadecimal integers, longer numbers and literals with
+ * non-ASCII characters are rare, and are left to {@link JSON#parseLiteral}.
+ *
+ * <p>A scanner keeps the value of the last number it read, so each tokener
+ * has its own. Instances of this class are not thread safe.
+ */
+final class JSONLiteralScanner {
+
+    /**
+     * The literal is not a number.
+     */
+    private static final int STRING = 0;
+
+    /**
+     * The literal is an integer, in {@link #longValue}.
+     */
+    private static final int LONG = 1;
+
+    /**
+     * The literal is a number that a double holds exactly, in
+     * {@link #doubleValue}.
+     */
+    private static final int DOUBLE = 2;
+
+    /**
+     * The literal must be classified by {@link JSON#parseLiteral}.
+     */
+    private static final int OTHER = 3;
+
+    /**
+     * The most significant digits an integer may have to be built directly;
+     * any more may not fit in a long.
+     */
+    private static final int MAX_LONG_DIGITS = 18;
+
+    /**
+     * The most significant digits a double is guaranteed to hold exactly.
+     */
+    private static final int MAX_DOUBLE_DIGITS = 15;
+
+    /**
+     * The powers of ten a double holds exactly.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22,
+    };
+
+    /**
+     * 2^53, above which not every integer is a double.
+     */
+    private static final double MAX_EXACT_DOUBLE = 0x1p53;
+
+    /**
+     * Bigger exponents are not accumulated any further.
+     */
+    private static final int MAX_EXPONENT = 9999;
+
+    private final AsciiBytes bytes = new AsciiBytes();
+
+    private long longValue;
+    private double doubleValue;
+
+    /**
+     * Returns the value of the literal in the given range of {@code in}: one
+     * of {@link JSONObject#NULL}, a Boolean, an Integer, a Long, a Double, a
+     * BigDecimal or, if the literal is none of these, a String.
+     */
+    Object parse(CharSequence in, int start, int end) {
+        if (isKeyword(in, start, end, "null")) {
+            return JSONObject.NULL;
+        } else if (isKeyword(in, start, end, "true")) {
+            return Boolean.TRUE;
+        } else if (isKeyword(in, start, end, "false")) {
+            return Boolean.FALSE;
+        }
+
+        switch (scanNumber(in, start, end)) {
+            case LONG:
+                if (longValue <= Integer.MAX_VALUE && longValue >= Integer.MIN_VALUE) {
+                    return (int) longValue;
+                }
+                return longValue;
+            case DOUBLE:
+                return doubleValue;
+            case OTHER:
+                return JSON.parseLiteral(in.subSequence(start, end).toString());
+            default:
+                return in.subSequence(start, end).toString();
+        }
+    }
+
+    /**
+     * Returns the value of the UTF-8 encoded literal in the given range of
+     * {@code in}, as {@link #parse(CharSequence, int, int)} does.
+     */
+    Object parse(byte[] in, int start, int end) {
+        return parse(bytes.reset(in), start, end);
+    }
+
+    /**
+     * Returns the value, rounded to the nearest double, of the number in
+     * JSON syntax in the given range of {@code in}.
+     */
+    double parseDouble(byte[] in, int start, int end) {
+        switch (scanNumber(bytes.reset(in), start, end)) {
+            case LONG:
+                // "-0" is -0.0 here, as with Double.parseDouble; JSONByteTokener
+                // reads integers itself and never passes "-0" to this method
+                return longValue == 0 && in[start] == '-' ? -0.0 : longValue;
+            case DOUBLE:
+                return doubleValue;
+            default:
+                return Double.parseDouble(bytes.subSequence(start, end).toString());
+        }
+    }
+
+    /**
+     * Returns true if the range holds {@code keyword}, ignoring the case of
+     * ASCII letters. Literals with other characters are left to
+     * {@link JSON#parseLiteral}, which ignores case the way String does.
+     *
+     * @param keyword a keyword in lower case.
+     */
+    private static boolean isKeyword(CharSequence in, int start, int end, String keyword) {
+        if (end - start != keyword.length()) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if ((in.charAt(i) | 0x20) != keyword.charAt(i - start)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the literal in the given range as a decimal number, the way
+     * {@link Long#parseLong} and {@link java.math.BigDecimal} read it: an
+     * optional sign, digits with an optional point and an optional exponent.
+     *
+     * @return {@link #LONG} or {@link #DOUBLE} with the value set,
+     * {@link #STRING} if the literal is not a number, or {@link #OTHER}.
+     */
+    private int scanNumber(CharSequence in, int start, int end) {
+        int i = start;
+        char c = in.charAt(i);
+        boolean negative = c == '-';
+        if (negative || c == '+') {
+            i++;
+        }
+
+        long significand = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean mantissa = false;
+        boolean point = false;
+        for (; i < end; i++) {
+            c = in.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = true;
+                // leading zeros are not significant
+                if ((significand != 0 || c != '0') && ++digits <= MAX_LONG_DIGITS) {
+                    significand = significand * 10 + (c - '0');
+                }
+                if (point) {
+                    scale++;
+                }
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        if (!mantissa) {
+            return notDecimal(in, start, end);
+        }
+
+        boolean exponential = false;
+        int exponent = 0;
+        if (i < end && (in.charAt(i) == 'e' || in.charAt(i) == 'E')) {
+            exponential = true;
+            boolean negativeExponent = false;
+            if (++i < end && (in.charAt(i) == '-' || in.charAt(i) == '+')) {
+                negativeExponent = in.charAt(i++) == '-';
+            }
+            int exponentStart = i;
+            for (; i < end && (c = in.charAt(i)) >= '0' && c <= '9'; i++) {
+                if (exponent <= MAX_EXPONENT) {
+                    exponent = exponent * 10 + (c - '0');
+                }
+            }
+            if (i == exponentStart) {
+                return notDecimal(in, start, end);
+            }
+            if (negativeExponent) {
+                exponent = -exponent;
+            }
+        }
+        if (i != end) {
+            return notDecimal(in, start, end);
+        }
+
+        if (!point && !exponential) {
+            // integers with a leading zero are octal or hexadecimal
+            if ((in.charAt(start) == '0' && end - start > 1) || digits > MAX_LONG_DIGITS) {
+                return OTHER;
+            }
+            longValue = negative ? -significand : significand;
+            return LONG;
+        }
+
+        if (digits > MAX_DOUBLE_DIGITS || exponent > MAX_EXPONENT || exponent < -MAX_EXPONENT) {
+            return OTHER;
+        }
+        double value;
+        if (significand == 0) {
+            value = 0;
+        } else {
+            // both operands are exact, so the result is correctly rounded
+            int power = exponent - scale;
+            if (power >= 0 && power < POWERS_OF_TEN.length) {
+                value = significand * POWERS_OF_TEN[power];
+            } else if (power < 0 && -power < POWERS_OF_TEN.length) {
+                value = significand / POWERS_OF_TEN[-power];
+            } else {
+                return OTHER;
+            }
+            // JSON.parseLiteral compares the number with Double.toString,
+            // which in older JDKs may print more digits than needed for
+            // bigger values and so make it return a BigDecimal
+            if (value >= MAX_EXACT_DOUBLE) {
+                return OTHER;
+            }
+        }
+        doubleValue = negative ? -value : value;
+        return DOUBLE;
+    }
+
+    /**
+     * Classifies a literal that is not a decimal number. It is a string
+     * unless it may be an octal or hexadecimal integer, or has non-ASCII
+     * characters, which {@link Long#parseLong} may take for digits.
+     */
+    private static int notDecimal(CharSequence in, int start, int end) {
+        if (in.charAt(start) == '0' && end - start > 1) {
+            return OTHER;
+        }
+        for (int i = start; i < end; i++) {
+            if (in.charAt(i) >= 0x80) {
+                return OTHER;
+            }
+        }
+        return STRING;
+    }
+
+    /**
+     * UTF-8 encoded bytes seen as characters. Each byte is one character, so
+     * only ASCII characters are read correctly, but each subsequence is
+     * decoded as a whole.
+     */
+    private static final class AsciiBytes implements CharSequence {
+
+        private byte[] in;
+
+        AsciiBytes reset(byte[] in) {
+            this.in = in;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return in.length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (in[index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(in, start, end - start, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String toString() {
+            return new String(in, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -23,7 +23,6 @@ import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -128,7 +127,16 @@ public class JSONObject {
      */
     public JSONObject(boolean caseInsensitive) {
         this.caseInsensitive = caseInsensitive;
-        nameValuePairs = caseInsensitive ? new LinkedCaseInsensitiveMap<Object>() : new LinkedHashMap<String, Object>();
+        nameValuePairs = new CompactObjectMap(caseInsensitive);
+    }
+
+    /**
+     * Creates a {@code JSONObject} whose name/value mappings are read from a
+     * {@link JSONTape}.
+     */
+    JSONObject(boolean caseInsensitive, TapeObjectMap nameValuePairs) {
+        this.caseInsensitive = caseInsensitive;
+        this.nameValuePairs = nameValuePairs;
     }
 
     /**
@@ -340,6 +348,24 @@ public class JSONObject {
         return this;
     }
 
+    /**
+     * Maps {@code name} to {@code value} as {@link #put(String, Object)}
+     * does, for a tokener that already knows the name in lower case.
+     *
+     * @param lowerName the name converted to lower case with the default
+     *                  locale, or null to convert it if needed.
+     */
+    JSONObject put(String name, String lowerName, Object value) throws JSONException {
+        if (lowerName == null || value == null || !(nameValuePairs instanceof CompactObjectMap)) {
+            return put(name, value);
+        }
+        if (value instanceof Number) {
+            JSON.checkDouble(((Number) value).doubleValue());
+        }
+        ((CompactObjectMap) nameValuePairs).put(checkName(name), lowerName, value);
+        return this;
+    }
+
     /**
      * Put a null value for key in the JSONObject.
      * @param key   A key string.
@@ -509,6 +535,86 @@ public class JSONObject {
         return nameValuePairs.get(name);
     }
 
+    /**
+     * Returns the value mapped by {@code name}, or null if no such mapping
+     * exists, for a caller that already knows the name in lower case.
+     *
+     * @param name      The name of the value to get.
+     * @param lowerName {@code name} in lower case, converted with the default
+     *                  locale, used to look up the name if this object is
+     *                  case insensitive and the name is not found as written.
+     * @return The value.
+     */
+    public Object opt(String name, String lowerName) {
+        if (nameValuePairs instanceof CompactObjectMap) {
+            return ((CompactObjectMap) nameValuePairs).get(name, lowerName);
+        }
+        return nameValuePairs.get(name);
+    }
+
+    /**
+     * Looks up all keys of an index in a single pass over the members: for
+     * each member whose name is in the index, sets {@code values[id]} to its
+     * value, where {@code id} is the number of the name in the index. The
+     * other elements of {@code values} are left as they are. Names are
+     * matched the way the index matches them, which should ignore case if
+     * and only if this object does.
+     *
+     * @param keys   the names to look up.
+     * @param values where the values go, long enough for every number in the
+     *               index.
+     */
+    public void optAll(JSONKeyIndex keys, Object[] values) {
+        if (nameValuePairs instanceof CompactObjectMap) {
+            ((CompactObjectMap) nameValuePairs).getAll(keys, values);
+            return;
+        }
+        for (Map.Entry<String, Object> entry : nameValuePairs.entrySet()) {
+            int id = keys.get(entry.getKey());
+            if (id != JSONKeyIndex.NOT_FOUND) {
+                values[id] = entry.getValue();
+            }
+        }
+    }
+
+    /**
+     * Returns the value of the member at {@code position}, in insertion
+     * order, if that member is named {@code name}. Objects read from the
+     * same kind of input tend to have their members in the same order, so
+     * a caller that remembers where it found a member can check there
+     * first, without a hashed lookup. A member found this way is the one
+     * {@link #opt} would return.
+     *
+     * @param position  where the member was found in a similar object.
+     * @param name      The name of the value to get.
+     * @param lowerName {@code name} in lower case, converted with the default
+     *                  locale, which is compared with the name of the member
+     *                  if this object is case insensitive.
+     * @return The value, or null if the member at {@code position} has another
+     * name, there is no such member or positions are unknown for this object.
+     */
+    public Object optAt(int position, String name, String lowerName) {
+        if (nameValuePairs instanceof CompactObjectMap) {
+            return ((CompactObjectMap) nameValuePairs).getAt(position, name, lowerName);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the position of the member named {@code name}, in insertion
+     * order, to be passed to {@link #optAt} for similar objects.
+     *
+     * @param name The name of the value to find.
+     * @return The position, or -1 if there is no such member or positions are
+     * unknown for this object.
+     */
+    public int indexOf(String name) {
+        if (nameValuePairs instanceof CompactObjectMap) {
+            return ((CompactObjectMap) nameValuePairs).indexOf(name);
+        }
+        return -1;
+    }
+
     /**
      * Returns the value mapped by {@code name} if it exists and is a boolean or
      * can be coerced to a boolean, or throws otherwise.
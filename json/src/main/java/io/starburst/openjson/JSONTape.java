@@ -0,0 +1,447 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.starburst.openjson;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Indexes UTF-8 encoded JSON in a single pass and decodes values only when
+ * they are read. Example usage: <pre>
+ * JSONTape tape = new JSONTape(true);
+ * Object row = tape.parse(text.getBytes(), 0, text.getLength());
+ * if (row == null) {
+ *     row = tokener.reset(text.getBytes(), 0, text.getLength()).nextValue();
+ * }</pre>
+ *
+ * <p>The index, or tape, records the positions of the objects, arrays, keys
+ * and values in a primitive array. The returned {@link JSONObject} and
+ * {@link JSONArray} read their members from the tape: looking up a key
+ * compares the raw key bytes, and only the values that are asked for are
+ * decoded. Reading all keys, or modifying an object or array, decodes its
+ * members in full.
+ *
+ * <p>Only plain JSON is indexed: quoted keys, ':' and ',' separators and no
+ * comments. {@link #parse} returns null for the lenient syntax accepted by
+ * {@link JSONByteTokener}, and for malformed input, so that the caller can
+ * parse it with the tokener, which reports errors the usual way.
+ *
+ * <p>The tape and the input array are reused: values that have not been
+ * decoded yet can no longer be read after the next call to {@link #parse},
+ * and reading them throws {@link IllegalStateException}. Instances of this
+ * class are not thread safe.
+ */
+public class JSONTape {
+
+    /*
+     * Each node takes three ints: its kind and flags, then two values that
+     * depend on the kind. Objects and arrays store their number of members
+     * and the index of the node following their last member. Keys, strings
+     * and literals store the range of their bytes, without quotes.
+     */
+    static final int NODE_SIZE = 3;
+
+    static final int OBJECT = 1;
+    static final int ARRAY = 2;
+    static final int KEY = 3;
+    static final int STRING = 4;
+    static final int LITERAL = 5;
+    static final int KIND_MASK = 7;
+
+    /* The string contains escape sequences. */
+    static final int ESCAPED = 8;
+    /* The string contains non-ASCII bytes. */
+    static final int NON_ASCII = 16;
+    /* The string is enclosed in single quotes. */
+    static final int SINGLE_QUOTED = 32;
+
+    private final boolean caseInsensitive;
+
+    /**
+     * The locale used by case insensitive objects to compare keys.
+     */
+    private final Locale locale = Locale.getDefault();
+
+    /**
+     * Whether ASCII keys can be compared ignoring case without converting
+     * them with {@link #locale}.
+     */
+    private final boolean asciiFolding = "I".toLowerCase(locale).equals("i");
+
+    /**
+     * Decodes strings with escape sequences.
+     */
+    private final JSONByteTokener decoder;
+
+    /**
+     * Classifies unquoted literals.
+     */
+    private final JSONLiteralScanner literals = new JSONLiteralScanner();
+
+    private byte[] in;
+    private int limit;
+    private int[] tape = new int[NODE_SIZE * 64];
+    private int size;
+
+    /**
+     * Incremented on every parse, to detect reads of a previous input.
+     */
+    private int generation;
+
+    /**
+     * @param caseInsensitive whether parsed objects have case insensitive keys.
+     */
+    public JSONTape(boolean caseInsensitive) {
+        this.caseInsensitive = caseInsensitive;
+        this.decoder = new JSONByteTokener(caseInsensitive);
+    }
+
+    /**
+     * Indexes the object or array at the start of the input, ignoring leading
+     * whitespace and anything after its end.
+     *
+     * @param in     UTF-8 encoded JSON.
+     * @param offset the index of the first byte to parse.
+     * @param length the number of bytes to parse.
+     * @return a lazily decoded {@link JSONObject} or {@link JSONArray}, or
+     * null if the input isn't plain JSON and must be parsed by a tokener.
+     */
+    public Object parse(byte[] in, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > in.length) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length
+                    + " out of bounds for " + in.length + " bytes");
+        }
+        this.in = in;
+        this.limit = offset + length;
+        this.size = 0;
+        this.generation++;
+
+        int pos = skipWhitespace(offset);
+        if (pos == limit || (in[pos] != '{' && in[pos] != '[')) {
+            return null;
+        }
+        if (indexValue(pos) == -1) {
+            return null;
+        }
+        return value(0);
+    }
+
+    private int skipWhitespace(int pos) {
+        while (pos < limit) {
+            byte c = in[pos];
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Appends the nodes of the value at {@code pos}.
+     *
+     * @return the index after the value, or -1 if it isn't plain JSON.
+     */
+    private int indexValue(int pos) {
+        if (pos == limit) {
+            return -1;
+        }
+        switch (in[pos]) {
+            case '{':
+                return indexObject(pos + 1);
+            case '[':
+                return indexArray(pos + 1);
+            case '"':
+                return indexString(STRING, pos + 1, '"');
+            case '\'':
+                return indexString(STRING | SINGLE_QUOTED, pos + 1, '\'');
+            default:
+                return indexLiteral(pos);
+        }
+    }
+
+    private int indexObject(int pos) {
+        int node = addNode(OBJECT, 0, 0);
+        int count = 0;
+
+        pos = skipWhitespace(pos);
+        if (pos < limit && in[pos] == '}') {
+            tape[node + 2] = size;
+            return pos + 1;
+        }
+
+        while (true) {
+            if (pos == limit) {
+                return -1;
+            } else if (in[pos] == '"') {
+                pos = indexString(KEY, pos + 1, '"');
+            } else if (in[pos] == '\'') {
+                pos = indexString(KEY | SINGLE_QUOTED, pos + 1, '\'');
+            } else {
+                return -1;
+            }
+            if (pos == -1) {
+                return -1;
+            }
+
+            pos = skipWhitespace(pos);
+            if (pos == limit || in[pos] != ':' || (pos + 1 < limit && in[pos + 1] == '>')) {
+                return -1;
+            }
+            pos = indexValue(skipWhitespace(pos + 1));
+            if (pos == -1) {
+                return -1;
+            }
+            count++;
+
+            pos = skipWhitespace(pos);
+            if (pos == limit) {
+                return -1;
+            } else if (in[pos] == '}') {
+                tape[node + 1] = count;
+                tape[node + 2] = size;
+                return pos + 1;
+            } else if (in[pos] != ',') {
+                return -1;
+            }
+            pos = skipWhitespace(pos + 1);
+        }
+    }
+
+    private int indexArray(int pos) {
+        int node = addNode(ARRAY, 0, 0);
+        int count = 0;
+
+        pos = skipWhitespace(pos);
+        if (pos < limit && in[pos] == ']') {
+            tape[node + 2] = size;
+            return pos + 1;
+        }
+
+        while (true) {
+            if (pos == limit || in[pos] == ',' || in[pos] == ']') {
+                // null elements are left to the tokener
+                return -1;
+            }
+            pos = indexValue(pos);
+            if (pos == -1) {
+                return -1;
+            }
+            count++;
+
+            pos = skipWhitespace(pos);
+            if (pos == limit) {
+                return -1;
+            } else if (in[pos] == ']') {
+                tape[node + 1] = count;
+                tape[node + 2] = size;
+                return pos + 1;
+            } else if (in[pos] != ',') {
+                return -1;
+            }
+            pos = skipWhitespace(pos + 1);
+        }
+    }
+
+    private int indexString(int kind, int pos, int quote) {
+        int start = pos;
+        while (pos < limit) {
+            int c = in[pos++];
+            if (c == quote) {
+                addNode(kind, start, pos - 1);
+                return pos;
+            } else if (c == '\\') {
+                if (pos == limit) {
+                    return -1;
+                }
+                kind |= ESCAPED;
+                if (in[pos++] == 'u') {
+                    if (pos + 4 > limit) {
+                        return -1;
+                    }
+                    for (int i = pos; i < pos + 4; i++) {
+                        if (JSONTokener.dehexchar((char) (in[i] & 0xFF)) == -1) {
+                            return -1;
+                        }
+                    }
+                    pos += 4;
+                }
+            } else if (c < 0) {
+                kind |= NON_ASCII;
+            }
+        }
+        return -1;
+    }
+
+    private int indexLiteral(int pos) {
+        int start = pos;
+        while (pos < limit) {
+            switch (in[pos]) {
+                case ',':
+                case '}':
+                case ']':
+                case ' ':
+                case '\t':
+                case '\r':
+                case '\n':
+                    return pos == start ? -1 : addLiteral(start, pos);
+                case '{':
+                case '[':
+                case '/':
+                case '\\':
+                case ':':
+                case '=':
+                case ';':
+                case '#':
+                case '\f':
+                    // terminators that only the tokener knows what to do with
+                    return -1;
+                default:
+                    pos++;
+            }
+        }
+        return pos == start ? -1 : addLiteral(start, pos);
+    }
+
+    private int addLiteral(int start, int end) {
+        addNode(LITERAL, start, end);
+        return end;
+    }
+
+    private int addNode(int kind, int a, int b) {
+        if (size + NODE_SIZE > tape.length) {
+            int[] grown = new int[tape.length * 2];
+            System.arraycopy(tape, 0, grown, 0, size);
+            tape = grown;
+        }
+        int node = size;
+        tape[size++] = kind;
+        tape[size++] = a;
+        tape[size++] = b;
+        return node;
+    }
+
+    boolean isCaseInsensitive() {
+        return caseInsensitive;
+    }
+
+    int generation() {
+        return generation;
+    }
+
+    void checkGeneration(int generation) {
+        if (generation != this.generation) {
+            throw new IllegalStateException("JSON value was read after its input was replaced");
+        }
+    }
+
+    int kind(int node) {
+        return tape[node] & KIND_MASK;
+    }
+
+    /**
+     * Returns the number of members of an object or array node.
+     */
+    int count(int node) {
+        return tape[node + 1];
+    }
+
+    /**
+     * Returns the node following {@code node} and all its members.
+     */
+    int next(int node) {
+        int kind = kind(node);
+        return kind == OBJECT || kind == ARRAY ? tape[node + 2] : node + NODE_SIZE;
+    }
+
+    /**
+     * Decodes the value at {@code node}.
+     */
+    Object value(int node) {
+        switch (kind(node)) {
+            case OBJECT:
+                return new JSONObject(caseInsensitive, new TapeObjectMap(this, node));
+            case ARRAY:
+                return new JSONArray(caseInsensitive, new TapeArrayList(this, node));
+            case LITERAL:
+                return literals.parse(in, tape[node + 1], tape[node + 2]);
+            default:
+                return decode(node);
+        }
+    }
+
+    /**
+     * Decodes the string, key or literal at {@code node}.
+     */
+    String decode(int node) {
+        int flags = tape[node];
+        int start = tape[node + 1];
+        int end = tape[node + 2];
+        if ((flags & ESCAPED) == 0) {
+            return new String(in, start, end - start, StandardCharsets.UTF_8);
+        }
+        // start again at the opening quote
+        return (String) decoder.reset(in, start - 1, end - start + 2).nextValue();
+    }
+
+    /**
+     * Returns true if the key at {@code node} equals {@code key}, the way the
+     * map of a {@link JSONObject} compares them.
+     *
+     * @param key     the key to look up.
+     * @param lowered the key converted to lower case, if case insensitive.
+     * @param ascii   whether the key only has ASCII characters.
+     */
+    boolean keyEquals(int node, String key, String lowered, boolean ascii) {
+        int flags = tape[node];
+        int start = tape[node + 1];
+        int end = tape[node + 2];
+
+        if (ascii && (flags & (ESCAPED | NON_ASCII)) == 0) {
+            if (end - start != key.length()) {
+                return false;
+            }
+            if (!caseInsensitive) {
+                for (int i = 0; i < key.length(); i++) {
+                    if (in[start + i] != key.charAt(i)) {
+                        return false;
+                    }
+                }
+                return true;
+            } else if (asciiFolding) {
+                for (int i = 0; i < key.length(); i++) {
+                    if (foldAscii(in[start + i]) != lowered.charAt(i)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        } else if (ascii && !caseInsensitive && (flags & ESCAPED) == 0) {
+            // non-ASCII bytes never decode to an ASCII key
+            return false;
+        }
+
+        String decoded = decode(node);
+        return caseInsensitive ? decoded.toLowerCase(locale).equals(lowered) : decoded.equals(key);
+    }
+
+    String toLowerCase(String key) {
+        return key.toLowerCase(locale);
+    }
+
+    private static int foldAscii(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+}
@@ -182,7 +182,20 @@ public class LinkedCaseInsensitiveMap<V> implements Map<String, V>, Serializable
 	@Override
 	@Nullable
 	public V put(String key, @Nullable V value) {
-		String oldKey = this.caseInsensitiveKeys.put(convertKey(key), key);
+		return put(key, convertKey(key), value);
+	}
+
+	/**
+	 * Variant of {@link #put(String, Object)} for a key that the caller has
+	 * already converted, the way {@link #convertKey(String)} does.
+	 * @param key the key
+	 * @param convertedKey the key converted for case-insensitive lookups
+	 * @param value the value
+	 * @return the previous value of the key
+	 */
+	@Nullable
+	V put(String key, String convertedKey, @Nullable V value) {
+		String oldKey = this.caseInsensitiveKeys.put(convertedKey, key);
 		V oldKeyValue = null;
 		if (oldKey != null && !oldKey.equals(key)) {
 			oldKeyValue = this.targetMap.remove(oldKey);
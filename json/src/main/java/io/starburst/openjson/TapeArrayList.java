@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.starburst.openjson;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The values of an array indexed by a {@link JSONTape}, decoded when they
+ * are read. Modifying the list decodes all values into an {@link ArrayList}
+ * and delegates to it from then on.
+ */
+class TapeArrayList extends AbstractList<Object> implements RandomAccess {
+
+    private final JSONTape tape;
+    private final int generation;
+    private final int node;
+
+    /**
+     * Decoded values by position, allocated on first use.
+     */
+    private Object[] values;
+
+    /**
+     * All values, once the list was modified.
+     */
+    private List<Object> decoded;
+
+    /*
+     * The position and node of the last value read, so that reading the
+     * values in order doesn't walk the tape from the start every time.
+     */
+    private int cursorIndex;
+    private int cursorNode;
+
+    TapeArrayList(JSONTape tape, int node) {
+        this.tape = tape;
+        this.generation = tape.generation();
+        this.node = node;
+        this.cursorNode = node + JSONTape.NODE_SIZE;
+    }
+
+    @Override
+    public Object get(int index) {
+        if (decoded != null) {
+            return decoded.get(index);
+        }
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of range [0.." + size() + ")");
+        }
+        if (values == null) {
+            values = new Object[size()];
+        }
+        Object value = values[index];
+        if (value == null) {
+            value = tape.value(seek(index));
+            values[index] = value;
+        }
+        return value;
+    }
+
+    @Override
+    public int size() {
+        return decoded != null ? decoded.size() : tape.count(node);
+    }
+
+    @Override
+    public Object set(int index, Object element) {
+        return decode().set(index, element);
+    }
+
+    @Override
+    public void add(int index, Object element) {
+        decode().add(index, element);
+    }
+
+    @Override
+    public Object remove(int index) {
+        return decode().remove(index);
+    }
+
+    /**
+     * Returns the node of the value at {@code index}.
+     */
+    private int seek(int index) {
+        tape.checkGeneration(generation);
+        if (index < cursorIndex) {
+            cursorIndex = 0;
+            cursorNode = node + JSONTape.NODE_SIZE;
+        }
+        while (cursorIndex < index) {
+            cursorNode = tape.next(cursorNode);
+            cursorIndex++;
+        }
+        return cursorNode;
+    }
+
+    private List<Object> decode() {
+        if (decoded == null) {
+            List<Object> list = new ArrayList<Object>(size());
+            for (int i = 0; i < size(); i++) {
+                list.add(get(i));
+            }
+            decoded = list;
+            values = null;
+        }
+        return decoded;
+    }
+}
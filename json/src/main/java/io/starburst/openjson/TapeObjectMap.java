@@ -0,0 +1,217 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.starburst.openjson;
+
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The name/value pairs of an object indexed by a {@link JSONTape}. Looking up
+ * a key decodes only its value; once a few keys were looked up, the keys of
+ * all members are decoded into an index for the next lookups. Any other access decodes all members into
+ * the same kind of map a {@link JSONTokener} would have built, and delegates
+ * to it from then on.
+ */
+class TapeObjectMap extends AbstractMap<String, Object> {
+
+    /**
+     * How many keys are looked up by scanning the members before they are
+     * indexed.
+     */
+    private static final int MAX_SCANS = 4;
+
+    private final JSONTape tape;
+    private final int generation;
+    private final int node;
+
+    /**
+     * Decoded values by member position, allocated on first use.
+     */
+    private Object[] values;
+
+    /**
+     * All members, once decoded.
+     */
+    private Map<String, Object> decoded;
+
+    /**
+     * The key node of the member last returned by {@link #find}.
+     */
+    private int foundNode;
+
+    /**
+     * How many keys were looked up by scanning the members.
+     */
+    private int scans;
+
+    /**
+     * The position of the member of each key, lowered if case insensitive,
+     * and the key node of each member, built once a few keys were looked up.
+     */
+    private Map<String, Integer> index;
+    private int[] keyNodes;
+
+    TapeObjectMap(JSONTape tape, int node) {
+        this.tape = tape;
+        this.generation = tape.generation();
+        this.node = node;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (decoded != null) {
+            return decoded.get(key);
+        }
+        int member = find(key);
+        return member == -1 ? null : value(member, foundNode);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (decoded != null) {
+            return decoded.containsKey(key);
+        }
+        return find(key) != -1;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return decoded != null ? decoded.isEmpty() : tape.count(node) == 0;
+    }
+
+    @Override
+    public int size() {
+        return decode().size();
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        return decode().put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        return decode().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        decode().clear();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return decode().keySet();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return decode().entrySet();
+    }
+
+    /**
+     * Returns the position of the member with the given key, or -1. Like a
+     * map, the last of several members with the same key wins.
+     */
+    private int find(Object key) {
+        if (!(key instanceof String)) {
+            return -1;
+        }
+        tape.checkGeneration(generation);
+
+        String name = (String) key;
+        String lowered = tape.isCaseInsensitive() ? tape.toLowerCase(name) : name;
+        if (index != null || ++scans > MAX_SCANS) {
+            Integer member = index().get(lowered);
+            if (member == null) {
+                return -1;
+            }
+            foundNode = keyNodes[member];
+            return member;
+        }
+
+        boolean ascii = true;
+        for (int i = 0; i < name.length() && ascii; i++) {
+            ascii = name.charAt(i) < 0x80;
+        }
+
+        int found = -1;
+        int keyNode = node + JSONTape.NODE_SIZE;
+        for (int i = 0, count = tape.count(node); i < count; i++) {
+            if (tape.keyEquals(keyNode, name, lowered, ascii)) {
+                found = i;
+                foundNode = keyNode;
+            }
+            keyNode = tape.next(keyNode + JSONTape.NODE_SIZE);
+        }
+        return found;
+    }
+
+    /**
+     * Indexes the keys of the members, so that reading many fields of a wide
+     * object doesn't scan all its members for each of them.
+     */
+    private Map<String, Integer> index() {
+        if (index == null) {
+            int count = tape.count(node);
+            Map<String, Integer> keys = new HashMap<String, Integer>(count * 4 / 3 + 1);
+            keyNodes = new int[count];
+            int keyNode = node + JSONTape.NODE_SIZE;
+            for (int i = 0; i < count; i++) {
+                String name = tape.decode(keyNode);
+                // the last of several members with the same key wins
+                keys.put(tape.isCaseInsensitive() ? tape.toLowerCase(name) : name, i);
+                keyNodes[i] = keyNode;
+                keyNode = tape.next(keyNode + JSONTape.NODE_SIZE);
+            }
+            index = keys;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the value of a member, decoding it on first use.
+     */
+    private Object value(int member, int keyNode) {
+        if (values == null) {
+            values = new Object[tape.count(node)];
+        }
+        Object value = values[member];
+        if (value == null) {
+            value = tape.value(keyNode + JSONTape.NODE_SIZE);
+            values[member] = value;
+        }
+        return value;
+    }
+
+    private Map<String, Object> decode() {
+        if (decoded == null) {
+            tape.checkGeneration(generation);
+            Map<String, Object> map = new CompactObjectMap(tape.isCaseInsensitive());
+            int keyNode = node + JSONTape.NODE_SIZE;
+            for (int i = 0, count = tape.count(node); i < count; i++) {
+                map.put(tape.decode(keyNode), value(i, keyNode));
+                keyNode = tape.next(keyNode + JSONTape.NODE_SIZE);
+            }
+            decoded = map;
+            values = null;
+            index = null;
+            keyNodes = null;
+        }
+        return decoded;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.starburst.openjson;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class CompactObjectMapTest {
+
+    @Test
+    public void testSameAsCaseInsensitiveMap() {
+        assertSameOperations(true, new LinkedCaseInsensitiveMap<Object>());
+    }
+
+    @Test
+    public void testSameAsLinkedHashMap() {
+        assertSameOperations(false, new LinkedHashMap<String, Object>());
+    }
+
+    @Test
+    public void testKeyMovesToEndWhenCaseChanges() {
+        Map<String, Object> map = new CompactObjectMap(true);
+        map.put("a", 1);
+        map.put("B", 2);
+        map.put("c", 3);
+        assertEquals(2, map.put("b", 4));
+        assertEquals("{a=1, c=3, b=4}", map.toString());
+        assertEquals(4, map.get("B"));
+        assertEquals(3, map.put("c", 5));
+        assertEquals("{a=1, c=5, b=4}", map.toString());
+    }
+
+    @Test
+    public void testIterators() {
+        Map<String, Object> map = new CompactObjectMap(true);
+        map.put("a", 1);
+        map.put("b", 2);
+        map.put("c", 3);
+
+        Iterator<String> keys = map.keySet().iterator();
+        keys.next();
+        keys.next();
+        keys.remove();
+        assertEquals("{a=1, c=3}", map.toString());
+        assertEquals("c", keys.next());
+        assertFalse(keys.hasNext());
+
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            entry.setValue(((Integer) entry.getValue()) * 10);
+        }
+        assertEquals("{a=10, c=30}", map.toString());
+
+        try {
+            for (String key : map.keySet()) {
+                map.put(key + "x", 0);
+            }
+            fail();
+        } catch (ConcurrentModificationException expected) {
+        }
+    }
+
+    @Test
+    public void testPromotion() {
+        Map<String, Object> map = new CompactObjectMap(true);
+        Map<String, Object> expected = new LinkedCaseInsensitiveMap<Object>();
+        for (int i = 0; i <= CompactObjectMap.MAX_COMPACT_SIZE * 2; i++) {
+            map.put("Key" + i, i);
+            expected.put("Key" + i, i);
+        }
+        assertEquals(expected, map);
+        assertEquals(expected.toString(), map.toString());
+        assertEquals(3, map.get("KEY3"));
+        assertEquals(3, map.remove("key3"));
+        assertNull(map.get("Key3"));
+    }
+
+    private static void assertSameOperations(boolean caseInsensitive, Map<String, Object> expected) {
+        Map<String, Object> map = new CompactObjectMap(caseInsensitive);
+        String[] keys = {"a", "A", "b", "B", "ab", "aB", "Ab", "c", "d", "e", "f", "g", "h", "i", "j", "k",
+                "l", "m", "n", "o", "p", "q", "r", "s", "t", "u", "v", "w", "x", "y", "z"};
+        Random random = new Random(1);
+        for (int i = 0; i < 20000; i++) {
+            String key = keys[random.nextInt(keys.length)];
+            int op = random.nextInt(10);
+            if (op < 6) {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            } else if (op < 8) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else if (op < 9) {
+                assertEquals(expected.get(key), map.get(key));
+                assertEquals(expected.containsKey(key), map.containsKey(key));
+            } else if (random.nextInt(20) == 0) {
+                expected.clear();
+                map.clear();
+            }
+            assertEquals(expected.size(), map.size());
+            assertEquals(new ArrayList<String>(expected.keySet()), new ArrayList<String>(map.keySet()));
+            assertEquals(new ArrayList<Object>(expected.values()), new ArrayList<Object>(map.values()));
+            assertEquals(expected, map);
+            assertEquals(expected.hashCode(), map.hashCode());
+        }
+    }
+
+    @Test
+    public void testJSONObjectsAreCompact() throws JSONException {
+        JSONObject object = new JSONObject(true, "{\"Id\":1,\"name\":\"x\",\"ID\":2}");
+        assertEquals(2, object.get("id"));
+        List<String> names = new ArrayList<String>();
+        for (Iterator<String> it = object.keys(); it.hasNext(); ) {
+            names.add(it.next());
+        }
+        assertEquals("[name, ID]", names.toString());
+    }
+}
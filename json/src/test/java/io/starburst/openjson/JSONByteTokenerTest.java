@@ -0,0 +1,322 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.starburst.openjson;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JSONByteTokenerTest {
+
+    @Test
+    public void testMultiByteCharacters() throws JSONException {
+        String json = "{\"näme\":\"日本語\",\"emoji\":\"😀\",\"x\":café}";
+        JSONObject object = (JSONObject) tokener(json).nextValue();
+        assertEquals("日本語", object.get("näme"));
+        assertEquals("😀", object.get("emoji"));
+        assertEquals("café", object.get("x"));
+        assertEquals(new JSONObject(true, json).toString(), object.toString());
+    }
+
+    @Test
+    public void testEscapes() throws JSONException {
+        JSONObject object = (JSONObject) tokener(
+                "{\"a\":\"\\u00e9\\t\\\"x\\\"\",\"b\":\"\\é\",\"c\":\"\\😀!\"}").nextValue();
+        assertEquals("é\t\"x\"", object.get("a"));
+        assertEquals("é", object.get("b"));
+        assertEquals("😀!", object.get("c"));
+    }
+
+    @Test
+    public void testOffsetAndLength() throws JSONException {
+        byte[] bytes = "xx[1,\"two\"]{garbage".getBytes(StandardCharsets.UTF_8);
+        JSONArray array = (JSONArray) new JSONByteTokener(true, bytes, 2, 9).nextValue();
+        assertEquals(2, array.length());
+        assertEquals(1, array.get(0));
+        assertEquals("two", array.get(1));
+
+        try {
+            new JSONByteTokener(true, bytes, 2, 8).nextValue();
+            fail();
+        } catch (JSONException expected) {
+        }
+    }
+
+    @Test
+    public void testReset() throws JSONException {
+        JSONByteTokener tokener = new JSONByteTokener(false);
+        byte[] first = "{\"Key\":1}".getBytes(StandardCharsets.UTF_8);
+        byte[] second = " \"str\" ".getBytes(StandardCharsets.UTF_8);
+
+        JSONObject object = (JSONObject) tokener.reset(first, 0, first.length).nextValue();
+        assertEquals(1, object.get("Key"));
+        assertFalse(object.has("key"));
+        assertFalse(tokener.more());
+
+        assertEquals("str", tokener.reset(second, 0, second.length).nextValue());
+        assertTrue(tokener.more());
+    }
+
+    @Test
+    public void testKeysAcrossInputs() throws JSONException {
+        JSONByteTokener tokener = new JSONByteTokener(true);
+        String longKey = new String(new char[100]).replace('\0', 'k');
+        String[] rows = {
+                "{\"Id\":1,\"näme\":\"a\",\"e\\u0301\":2,'q':3,u:4,\"" + longKey + "\":5}",
+                "{\"Id\":6,\"näme\":\"b\",\"e\\u0301\":7,'q':8,u:9,\"" + longKey + "\":10}",
+        };
+
+        String id = null;
+        for (String row : rows) {
+            byte[] bytes = row.getBytes(StandardCharsets.UTF_8);
+            JSONObject object = (JSONObject) tokener.reset(bytes, 0, bytes.length).nextValue();
+            assertEquals(new JSONObject(true, row).toString(), object.toString());
+            assertEquals(object.get("id"), object.get("ID"));
+            assertEquals(object.get("NÄME"), object.get("näme"));
+            assertTrue(object.has("E\u0301"));
+            assertTrue(object.has(longKey.toUpperCase()));
+
+            String first = object.keys().next();
+            if (id != null) {
+                assertSame(id, first);
+            }
+            id = first;
+        }
+    }
+
+    @Test
+    public void testByteOrderMark() throws JSONException {
+        byte[] bytes = "\ufeff{\"a\":1}".getBytes(StandardCharsets.UTF_8);
+        JSONObject object = (JSONObject) new JSONByteTokener(true, bytes, 0, bytes.length).nextValue();
+        assertEquals(1, object.get("a"));
+    }
+
+    @Test
+    public void testPeekClean() throws JSONException {
+        JSONByteTokener tokener = tokener(" /* comment */ # line\n {}");
+        assertEquals('{', tokener.peekClean());
+        assertEquals(0, ((JSONObject) tokener.nextValue()).length());
+        assertEquals(-1, tokener.peekClean());
+    }
+
+    @Test
+    public void testErrorMessageMatchesStringTokener() {
+        String json = "{\"a\":1,\"b\"}";
+        String expected = null;
+        try {
+            new JSONTokener(true, json).nextValue();
+            fail();
+        } catch (JSONException e) {
+            expected = e.getMessage();
+        }
+        try {
+            tokener(json).nextValue();
+            fail();
+        } catch (JSONException e) {
+            assertEquals(expected, e.getMessage());
+        }
+    }
+
+    @Test
+    public void testSelector() throws JSONException {
+        JSONFieldSelector selector = new JSONFieldSelector(true, false).select("id").select("Name");
+        JSONObject object = (JSONObject) tokener("{\"ID\":1,\"big\":{\"a\":[1,{\"b\":\"}\"}],\"c\":'x'},"
+                + "\"n\\u0061me\":\"n\",unquoted:2,\"tail\":[,]}").nextValue(selector);
+        assertEquals(2, object.length());
+        assertEquals(1, object.get("id"));
+        assertEquals("n", object.get("name"));
+        assertEquals("{\"ID\":1,\"name\":\"n\"}", object.toString());
+    }
+
+    @Test
+    public void testSelectorCaseSensitiveAndDots() throws JSONException {
+        JSONFieldSelector selector = new JSONFieldSelector(false, true).select("a_b").select("Ü");
+        byte[] bytes = "{\"a.b\":1,\"A_B\":2,\"Ü\":3,\"ü\":4}".getBytes(StandardCharsets.UTF_8);
+        JSONObject object = (JSONObject) new JSONByteTokener(false, bytes, 0, bytes.length).nextValue(selector);
+        assertEquals(2, object.length());
+        assertEquals(1, object.get("a.b"));
+        assertEquals(3, object.get("Ü"));
+    }
+
+    @Test
+    public void testSelectorFollowsDefaultLocale() throws JSONException {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            JSONFieldSelector selector = new JSONFieldSelector(true, false).select("id");
+            JSONObject object = (JSONObject) tokener("{\"ID\":1,\"id\":2}").nextValue(selector);
+            assertEquals(1, object.length());
+            assertEquals(2, object.get("id"));
+
+            selector = new JSONFieldSelector(true, false).select("ID");
+            object = (JSONObject) tokener("{\"ID\":1,\"id\":2,\"\u0131d\":3}").nextValue(selector);
+            assertEquals(1, object.length());
+            assertEquals(3, object.get("ID"));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    public void testSelectorIgnoredForOtherValues() throws JSONException {
+        JSONFieldSelector selector = new JSONFieldSelector(true, false);
+        assertTrue(selector.isEmpty());
+        assertEquals(0, ((JSONObject) tokener("{\"a\":1}").nextValue(selector)).length());
+        assertEquals(2, ((JSONArray) tokener("[{\"a\":1},2]").nextValue(selector)).length());
+        assertEquals("s", tokener("'s'").nextValue(selector));
+    }
+
+    @Test
+    public void testSelectorSkippedValuesAreValidated() {
+        JSONFieldSelector selector = new JSONFieldSelector(true, false).select("a");
+        String[] malformed = {
+                "{\"a\":1,\"b\":[1,2}",
+                "{\"a\":1,\"b\":{\"c\"}}",
+                "{\"a\":1,\"b\":\"\\u00zz\"}",
+                "{\"a\":1,\"b\":{\"c\":1",
+                "{\"a\":1,\"b\":}",
+                "{\"a\":1,\"b\":{null:1}}",
+                "{\"a\":1,\"b\":\"unterminated}",
+        };
+        for (String json : malformed) {
+            try {
+                tokener(json).nextValue(selector);
+                fail("Successfully parsed: " + json);
+            } catch (JSONException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testNextKey() throws JSONException {
+        JSONKeyIndex keys = new JSONKeyIndex(true).put("id", 0).put("Name", 1).put("é", 2);
+        JSONByteTokener tokener = tokener(
+                " {\"ID\":7, \"other\":[1,{\"id\":2}], name='n'; \"\\u0069d\" => 8,\"É\":null}");
+        tokener.beginObject();
+        assertEquals(0, tokener.nextKey(keys));
+        assertTrue(tokener.nextLongLiteral());
+        assertEquals(7, tokener.longValue());
+        assertEquals(JSONKeyIndex.NOT_FOUND, tokener.nextKey(keys));
+        tokener.skipValue();
+        assertEquals(1, tokener.nextKey(keys));
+        assertEquals("n", tokener.nextValue());
+        assertEquals(0, tokener.nextKey(keys));
+        assertEquals(8, tokener.nextValue());
+        assertEquals(2, tokener.nextKey(keys));
+        assertEquals(JSONObject.NULL, tokener.nextValue());
+        assertEquals(JSONByteTokener.END_OF_OBJECT, tokener.nextKey(keys));
+        assertFalse(tokener.more());
+
+        JSONKeyIndex sensitive = new JSONKeyIndex(false).put("id", 0);
+        tokener = tokener("{\"ID\":1,\"id\":2}");
+        tokener.beginObject();
+        assertEquals(JSONKeyIndex.NOT_FOUND, tokener.nextKey(sensitive));
+        tokener.skipValue();
+        assertEquals(0, tokener.nextKey(sensitive));
+
+        tokener = tokener("{}");
+        tokener.beginObject();
+        assertEquals(JSONByteTokener.END_OF_OBJECT, tokener.nextKey(keys));
+    }
+
+    @Test
+    public void testNextKeyMalformed() {
+        JSONKeyIndex keys = new JSONKeyIndex(true).put("a", 0);
+        String[] malformed = {"{\"a\" 1}", "{\"a\":1 \"b\":2}", "{\"a\":1,", "{null:1}", "[1]"};
+        for (String json : malformed) {
+            try {
+                JSONByteTokener tokener = tokener(json);
+                tokener.beginObject();
+                while (tokener.nextKey(keys) != JSONByteTokener.END_OF_OBJECT) {
+                    tokener.skipValue();
+                }
+                fail("Successfully parsed: " + json);
+            } catch (JSONException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testNumberLiterals() throws JSONException {
+        String[] longs = {"0", "-0", "12", "-12", "9223372036854775807", "-9223372036854775808"};
+        for (String literal : longs) {
+            JSONByteTokener tokener = tokener(literal + ",");
+            assertTrue(literal, tokener.nextLongLiteral());
+            assertEquals(literal, ((Number) tokener(literal).nextValue()).longValue(), tokener.longValue());
+            assertEquals(',', tokener.peekClean());
+        }
+
+        String[] notLongs = {"9223372036854775808", "-9223372036854775809", "012", "0x1F", "+1", "1.0",
+                "1e3", "12abc", "-", "true", "\"1\"", "null"};
+        for (String literal : notLongs) {
+            JSONByteTokener tokener = tokener(literal);
+            assertFalse(literal, tokener.nextLongLiteral());
+            assertEquals(literal, tokener(literal).nextValue(), tokener.nextValue());
+        }
+
+        String[] doubles = {"0", "-0", "1.5", "-2.25e-3", "1E5", "0.1", "3.141592653589793238",
+                "12345678901234567890", "1e999"};
+        for (String literal : doubles) {
+            JSONByteTokener tokener = tokener(literal);
+            assertTrue(literal, tokener.nextDoubleLiteral());
+            Object value = tokener(literal).nextValue();
+            double expected = value instanceof Number ? ((Number) value).doubleValue()
+                    : Double.parseDouble((String) value);
+            assertEquals(literal, expected, tokener.doubleValue(), 0.0);
+            assertEquals(literal, Double.doubleToLongBits(expected), Double.doubleToLongBits(tokener.doubleValue()));
+        }
+
+        String[] notDoubles = {"01.5", "1.", ".5", "1e", "-.5", "0x1F", "NaN", "1.5.5", "1e5x"};
+        for (String literal : notDoubles) {
+            assertFalse(literal, tokener(literal).nextDoubleLiteral());
+        }
+    }
+
+    @Test
+    public void testNumberLiteral() throws JSONException {
+        String[] numbers = {"0", "-0", "42", "-1.25", "0.1", "1e10", "-2.5E-3", "123456789012345678901234567890.123"};
+        for (String literal : numbers) {
+            JSONByteTokener tokener = tokener(" " + literal + " , true");
+            assertTrue(literal, tokener.nextNumberLiteral());
+            assertEquals(literal, new String(tokener.input(), tokener.numberOffset(), tokener.numberLength(),
+                    StandardCharsets.UTF_8));
+            assertEquals(literal, ',', tokener.peekClean());
+        }
+
+        String[] notNumbers = {"01.5", "1.", ".5", "1e", "-.5", "0x1F", "NaN", "1.5.5", "1e5x", "\"1\"", "[1]", "true"};
+        for (String literal : notNumbers) {
+            JSONByteTokener tokener = tokener(literal);
+            assertFalse(literal, tokener.nextNumberLiteral());
+            assertEquals(literal, literal.charAt(0), tokener.peekClean());
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testInvalidRange() {
+        new JSONByteTokener(true).reset(new byte[4], 2, 3);
+    }
+
+    private static JSONByteTokener tokener(String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        return new JSONByteTokener(true, bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.starburst.openjson;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class JSONLiteralScannerTest {
+
+    private static final String[] LITERALS = {
+            "null", "NULL", "True", "fALSE", "nul", "nulls", "truth",
+            "0", "-0", "+0", "00", "007", "08", "0x1F", "0X1f", "0xg", "0-5", "0+5", "-010", "+5",
+            "1", "-1", "2147483647", "2147483648", "-2147483648", "-2147483649",
+            "999999999999999999", "-999999999999999999",
+            "9223372036854775807", "-9223372036854775808", "9223372036854775808",
+            "12345678901234567890", "-000000000000000000000001",
+            "0.0", "-0.0", "0.5", "-0.5", ".5", "-.5", "+.5", "1.", "1.50", "0.1", "0.001",
+            "1e5", "1E5", "-1e5", "+1e+5", "1e-5", "01e2", "0e5", "-0e5", "0e99999999999",
+            "1.5e3", "12.345", "3.14159265358979", "3.141592653589793", "0.10000000000000001",
+            "123456789012345", "1234567890123456e-3", "1.5e22", "1.5e23", "1e-22", "1e-23",
+            "1e308", "1e309", "1e999", "-1e999", "1e-400", "1e99999", "1e2147483648",
+            "1.000000000000000000000000001", "0.000000000000000000000000000000000001",
+            "-", "+", ".", "-.", "e5", "1e", "1e+", "1.2.3", "1..2", "1e5.5", "--1", "+-1",
+            "abc", "NaN", "Infinity", "-Infinity", "1d", "1f", "0x1p3", "1_000",
+            "café", "٣", "-٣", "1٣", "falſe", "٠x10", "0٣",
+    };
+
+    @Test
+    public void testSameAsParseLiteral() {
+        for (String literal : LITERALS) {
+            assertParsed(literal);
+        }
+    }
+
+    @Test
+    public void testShortDecimals() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            long digits = random.nextLong() % 1000000000000000L;
+            int scale = random.nextInt(40) - 20;
+            assertParsed(new BigDecimal(BigDecimal.valueOf(digits).unscaledValue(), scale).toString());
+            assertParsed(new BigDecimal(BigDecimal.valueOf(digits).unscaledValue(), scale).toPlainString());
+        }
+    }
+
+    @Test
+    public void testParseDouble() {
+        String[] numbers = {"0", "-0", "1", "-0.0", "0.1", "1e5", "-1.5E-3", "12345678901234567890",
+                "3.141592653589793238", "1e400", "1e-400", "1.7976931348623157e308", "4.9e-324"};
+        JSONLiteralScanner scanner = new JSONLiteralScanner();
+        for (String number : numbers) {
+            byte[] bytes = ("[" + number + "]").getBytes(StandardCharsets.UTF_8);
+            assertEquals(number, Double.valueOf(number),
+                    Double.valueOf(scanner.parseDouble(bytes, 1, bytes.length - 1)));
+        }
+    }
+
+    @Test
+    public void testTokeners() throws JSONException {
+        String json = "[1,-2.5,3e2,12345678901234567890,0x10,true,Null,abc,1e999]";
+        JSONArray expected = new JSONArray(false);
+        for (String literal : json.substring(1, json.length() - 1).split(",")) {
+            expected.put(JSON.parseLiteral(literal));
+        }
+        assertEquals(expected.toString(), new JSONTokener(false, json).nextValue().toString());
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected.toString(), new JSONByteTokener(false, bytes, 0, bytes.length).nextValue().toString());
+        assertEquals(expected.toString(), new JSONTape(false).parse(bytes, 0, bytes.length).toString());
+    }
+
+    private static void assertParsed(String literal) {
+        JSONLiteralScanner scanner = new JSONLiteralScanner();
+        Object expected = JSON.parseLiteral(literal);
+
+        String padded = "[" + literal + "]";
+        Object fromChars = scanner.parse(padded, 1, padded.length() - 1);
+        assertEquals(literal, expected, fromChars);
+        assertEquals(literal, expected.getClass(), fromChars.getClass());
+
+        byte[] bytes = padded.getBytes(StandardCharsets.UTF_8);
+        Object fromBytes = scanner.parse(bytes, 1, bytes.length - 1);
+        assertEquals(literal, expected, fromBytes);
+        assertEquals(literal, expected.getClass(), fromBytes.getClass());
+    }
+}
@@ -1198,6 +1198,26 @@ public class JSONObjectTest {
         }
     }
 
+    @Test
+    public void testOptAll() throws JSONException {
+        JSONKeyIndex keys = new JSONKeyIndex(true).put("id", 0).put("Name", 1).put("missing", 2);
+        StringBuilder json = new StringBuilder("{\"ID\":1,\"other\":true,\"name\":\"x\"");
+        for (int i = 0; i < 2; i++) {
+            Object[] values = {null, null, "untouched"};
+            new JSONObject(true, json.toString() + "}").optAll(keys, values);
+            assertArrayEquals(new Object[]{1, "x", "untouched"}, values);
+
+            // again with more members than are kept in arrays
+            for (int j = 0; j <= CompactObjectMap.MAX_COMPACT_SIZE; j++) {
+                json.append(",\"k").append(j).append("\":").append(j);
+            }
+        }
+
+        Object[] values = new Object[1];
+        new JSONObject(false, "{\"ID\":1,\"id\":2}").optAll(new JSONKeyIndex(false).put("id", 0), values);
+        assertArrayEquals(new Object[]{2}, values);
+    }
+
     @Test
     public void testEnumWrapper() throws Exception {
         Object y = JSONObject.wrap(true, E.A);
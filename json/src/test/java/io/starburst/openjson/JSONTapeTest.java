@@ -0,0 +1,176 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.starburst.openjson;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JSONTapeTest {
+
+    private static final String[] PLAIN = {
+            "{}",
+            "[]",
+            " {\"a\" : 1 , \"b\":[true,false,null,\"x\"] }",
+            "{\"a\":{\"b\":{\"c\":[1,[2,[3]],{}]}},\"d\":-1.5e3,\"e\":12345678901234567890}",
+            "{\"esc\":\"\\u00e9\\n\\\"\",\"näme\":\"日本語\",'single':'q\\'s'}",
+            "{\"A\":1,\"a\":2,\"b\":3,\"A\":4}",
+            "[0x1F,017,1.0,unquoted,NULL,True]",
+            "{\"a\":1}trailing garbage",
+            "{\"big\":1e999,\"small\":0.1}",
+    };
+
+    private static final String[] LENIENT_OR_MALFORMED = {
+            "{\"a\"=1}",
+            "{\"a\"=>1}",
+            "{\"a\":1;\"b\":2}",
+            "{a:1}",
+            "[1,,2]",
+            "[1,]",
+            "[,1]",
+            "{\"a\":1,}",
+            "{\"a\":1 /* comment */}",
+            "{\"a\":1 # comment\n}",
+            "{\"a\":\"\\u00zz\"}",
+            "{\"a\":1",
+            "[1 2]",
+            "{\"a\":}",
+            "{\"a\":\"unterminated}",
+            "\ufeff{}",
+            "\"string\"",
+            "123",
+            "",
+    };
+
+    @Test
+    public void testParityWithTokener() throws JSONException {
+        for (boolean caseInsensitive : new boolean[]{true, false}) {
+            for (String json : PLAIN) {
+                Object lazy = parse(caseInsensitive, json);
+                Object eager = new JSONTokener(caseInsensitive, json).nextValue();
+                assertEquals(json, eager.getClass(), lazy.getClass());
+                assertEquals(json, eager.toString(), lazy.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testLenientOrMalformedInputIsLeftToTokener() {
+        for (String json : LENIENT_OR_MALFORMED) {
+            assertNull(json, parse(true, json));
+        }
+    }
+
+    @Test
+    public void testLookups() throws JSONException {
+        JSONObject object = (JSONObject) parse(true,
+                "{\"Id\":7,\"name\":\"n\",\"nested\":{\"x\":[1,2,3]},\"ID\":8,\"esc\\u0061ped\":1.5}");
+        assertTrue(object.has("id"));
+        assertEquals(8, object.get("iD"));
+        assertEquals("n", object.get("NAME"));
+        assertEquals(1.5, object.get("escaped"));
+        assertFalse(object.has("missing"));
+        assertNull(object.opt("missing"));
+
+        JSONArray x = object.getJSONObject("nested").getJSONArray("x");
+        assertEquals(3, x.length());
+        assertEquals(3, x.get(2));
+        assertEquals(1, x.get(0));
+        assertSame(x, object.getJSONObject("nested").getJSONArray("x"));
+
+        JSONObject sensitive = (JSONObject) parse(false, "{\"Id\":7,\"é\":1}");
+        assertFalse(sensitive.has("id"));
+        assertEquals(7, sensitive.get("Id"));
+        assertEquals(1, sensitive.get("é"));
+    }
+
+    @Test
+    public void testIndexedLookups() throws JSONException {
+        // lookups past the first few go through an index of the keys
+        JSONObject object = (JSONObject) parse(true,
+                "{\"Id\":7,\"name\":\"n\",\"ID\":8,\"esc\\u0061ped\":1.5,\"Näme\":2}");
+        JSONObject sensitive = (JSONObject) parse(false, "{\"Id\":7,\"id\":9,\"é\":1,\"Id\":10}");
+        for (int i = 0; i < 10; i++) {
+            assertEquals(8, object.get("id"));
+            assertEquals(8, object.get("iD"));
+            assertEquals("n", object.get("NAME"));
+            assertEquals(1.5, object.get("ESCAPED"));
+            assertEquals(2, object.get("näme"));
+            assertFalse(object.has("missing"));
+
+            assertEquals(10, sensitive.get("Id"));
+            assertEquals(9, sensitive.get("id"));
+            assertEquals(1, sensitive.get("é"));
+            assertFalse(sensitive.has("ID"));
+        }
+        assertEquals(new JSONTokener(true, object.toString()).nextValue().toString(), object.toString());
+    }
+
+    @Test
+    public void testNumbers() throws JSONException {
+        JSONArray array = (JSONArray) parse(true, "[1,2147483648,0.5,3.141592653589793238,\"1\"]");
+        assertEquals(1, array.get(0));
+        assertEquals(2147483648L, array.get(1));
+        assertEquals(0.5, array.get(2));
+        assertEquals(new BigDecimal("3.141592653589793238"), array.get(3));
+        assertEquals("1", array.get(4));
+    }
+
+    @Test
+    public void testModification() throws JSONException {
+        JSONObject object = (JSONObject) parse(true, "{\"a\":1,\"b\":[1,2]}");
+        object.put("c", 3);
+        object.remove("a");
+        assertEquals("{\"b\":[1,2],\"c\":3}", object.toString());
+
+        JSONArray array = object.getJSONArray("b");
+        array.put(3);
+        array.put(0, 0);
+        assertEquals("[0,2,3]", array.toString());
+    }
+
+    @Test
+    public void testValuesInvalidatedByNextParse() throws JSONException {
+        JSONTape tape = new JSONTape(true);
+        byte[] first = bytes("{\"a\":\"first\",\"b\":\"kept\"}");
+        JSONObject object = (JSONObject) tape.parse(first, 0, first.length);
+        assertEquals("kept", object.get("b"));
+
+        byte[] second = bytes("[1]");
+        tape.parse(second, 0, second.length);
+        try {
+            object.get("a");
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    private static Object parse(boolean caseInsensitive, String json) {
+        byte[] bytes = bytes(json);
+        return new JSONTape(caseInsensitive).parse(bytes, 0, bytes.length);
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
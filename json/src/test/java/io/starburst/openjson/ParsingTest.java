@@ -19,6 +19,7 @@ package io.starburst.openjson;
 import org.junit.Test;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 import static org.junit.Assert.assertEquals;
@@ -251,6 +252,16 @@ public class ParsingTest {
         } catch (StackOverflowError e) {
             fail("Stack overflowed on input: \"" + malformedJson + "\"");
         }
+        try {
+            byteTokener(malformedJson).nextValue();
+            fail("Successfully parsed bytes: \"" + malformedJson + "\"");
+        } catch (JSONException ignored) {
+        }
+    }
+
+    private JSONByteTokener byteTokener(String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        return new JSONByteTokener(true, bytes, 0, bytes.length);
     }
 
     private JSONArray array(Object... elements) {
@@ -270,6 +281,9 @@ public class ParsingTest {
         actual = canonicalize(actual);
         expected = canonicalize(expected);
         assertEquals("For input \"" + json + "\" " + message, expected, actual);
+
+        Object fromBytes = canonicalize(byteTokener(json).nextValue());
+        assertEquals("For input bytes \"" + json + "\" " + message, expected, fromBytes);
     }
 
     private void assertParsed(Object expected, String json) throws JSONException {